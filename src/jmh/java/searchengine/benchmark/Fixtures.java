@@ -0,0 +1,42 @@
+package searchengine.benchmark;
+
+import searchengine.config.SearchEngineProperties;
+import searchengine.services.lemmatization.LemmaService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Общие данные для бенчмарков: сохранённые страницы из src/jmh/resources/fixtures
+ * и лемматизатор, собранный без Spring-контекста.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static String html(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Fixture not found: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static LemmaService lemmaService() {
+        return lemmaService(new SearchEngineProperties().getMorphologyCacheSize());
+    }
+
+    static LemmaService lemmaService(int morphologyCacheSize) {
+        SearchEngineProperties properties = new SearchEngineProperties();
+        properties.setMorphologyCacheSize(morphologyCacheSize);
+        LemmaService lemmaService = new LemmaService(properties);
+        lemmaService.init();
+        return lemmaService;
+    }
+}
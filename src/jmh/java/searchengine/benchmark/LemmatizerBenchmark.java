@@ -0,0 +1,87 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.lemmatization.LemmaCounts;
+import searchengine.services.lemmatization.LemmaService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Лемматизация текста сохранённой русской страницы: прежний вариант на регулярном
+ * выражении с двумя обращениями к морфологии на каждое слово против потокового
+ * токенизатора с кэшем нормальных форм. Вариант без кэша показывает стоимость
+ * самой морфологии, {@code tokenize} - проход по тексту с готовыми нормальными формами.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmatizerBenchmark {
+
+    @Param({"ru-library-news.html", "ru-catalog-section.html"})
+    public String page;
+
+    private LemmaService lemmaService;
+    private LemmaService uncached;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        lemmaService = Fixtures.lemmaService();
+        uncached = Fixtures.lemmaService(0);
+        text = Jsoup.parse(Fixtures.html(page)).text();
+    }
+
+    @Benchmark
+    public Map<String, Integer> regexWithoutCache() {
+        return legacyLemmas(lemmaService.morphology, text);
+    }
+
+    @Benchmark
+    public LemmaCounts streamingWithCache() {
+        return lemmaService.countLemmas(text);
+    }
+
+    @Benchmark
+    public LemmaCounts streamingWithoutCache() {
+        return uncached.countLemmas(text);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        int[] words = new int[1];
+        lemmaService.forEachToken(text, Integer.MAX_VALUE, (start, end, lemma) -> words[0]++);
+        return words[0];
+    }
+
+    private static Map<String, Integer> legacyLemmas(LuceneMorphology morphology, String text) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        Matcher matcher = Pattern.compile("\\p{IsCyrillic}+").matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String word = matcher.group();
+            if (isServicePart(morphology.getMorphInfo(word))) continue;
+            String base = morphology.getNormalForms(word).get(0);
+            lemmas.merge(base, 1, Integer::sum);
+        }
+        return lemmas;
+    }
+
+    private static boolean isServicePart(List<String> morphInfo) {
+        for (String info : morphInfo) {
+            if (info.contains("СОЮЗ") || info.contains("МЕЖД") || info.contains("ПРЕДЛ") || info.contains("ЧАСТ")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
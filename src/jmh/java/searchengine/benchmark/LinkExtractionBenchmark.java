@@ -0,0 +1,52 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import searchengine.indexing.LinkExtractor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор сохранённой страницы и извлечение из неё ссылок обхода.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    private static final String ROOT = "https://library.example";
+
+    @Param({"ru-library-news.html", "ru-catalog-section.html"})
+    public String page;
+
+    private String html;
+    private Document document;
+    private LinkExtractor extractor;
+
+    @Setup
+    public void setUp() {
+        html = Fixtures.html(page);
+        document = Jsoup.parse(html, ROOT);
+        extractor = new LinkExtractor(ROOT);
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, ROOT);
+    }
+
+    @Benchmark
+    public List<String> extractLinks() {
+        return extractor.extract(document);
+    }
+
+    @Benchmark
+    public List<String> parseAndExtract() {
+        return extractor.extract(Jsoup.parse(html, ROOT));
+    }
+}
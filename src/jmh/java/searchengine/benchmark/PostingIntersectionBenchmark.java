@@ -0,0 +1,44 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.search.index.PostingIntersection;
+import searchengine.services.search.index.PostingMatch;
+import searchengine.services.search.index.Postings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересечение постинг-листов синтетического корпуса: редкая лемма с частой
+ * (галопирующий поиск) и три леммы средней частоты.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostingIntersectionBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int pages;
+
+    private Postings[] rareAndCommon;
+    private Postings[] threeMedium;
+
+    @Setup
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(pages);
+        rareAndCommon = corpus.query(0.001, 0.4);
+        threeMedium = corpus.query(0.05, 0.1, 0.2);
+    }
+
+    @Benchmark
+    public PostingMatch rareAndCommon() {
+        return PostingIntersection.intersect(rareAndCommon);
+    }
+
+    @Benchmark
+    public PostingMatch threeMedium() {
+        return PostingIntersection.intersect(threeMedium);
+    }
+}
@@ -0,0 +1,127 @@
+package searchengine.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import searchengine.config.SearchEngineProperties;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.services.search.RankedPages;
+import searchengine.services.search.SearchService;
+import searchengine.services.search.index.InvertedIndex;
+import searchengine.services.search.index.PostingIntersection;
+import searchengine.services.search.index.PostingMatch;
+import searchengine.services.search.index.Postings;
+import searchengine.services.search.ranking.Bm25RankingEngine;
+import searchengine.services.search.ranking.RankingEngine;
+import searchengine.services.search.ranking.SumRankingEngine;
+import searchengine.services.statistics.IndexStatistics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ранжирование запроса из трёх лемм одного сайта: пересечение постингов
+ * синтетического корпуса и отбор {@code limit} лучших страниц.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int pages;
+
+    @Param({"20", "200"})
+    public int limit;
+
+    @Param({"sum", "bm25"})
+    public String engine;
+
+    private SearchService searchService;
+    private List<Lemma> lemmas;
+
+    @Setup
+    public void setUp() {
+        Postings[] postings = new SyntheticCorpus(pages).query(0.05, 0.1, 0.2);
+        Site site = new Site();
+        site.setId(1);
+        IndexStatistics statistics = statistics(site);
+        searchService = new SearchService(null, null, null, new CorpusIndex(postings), null, null,
+                rankingEngine(statistics), null, statistics, null, new SimpleMeterRegistry());
+
+        site.setUrl("https://library.example");
+        lemmas = List.of(
+                new Lemma(0, site, "выставка", postings[0].size()),
+                new Lemma(1, site, "библиотека", postings[1].size()),
+                new Lemma(2, site, "книга", postings[2].size()));
+    }
+
+    /**
+     * Статистика без обращения к базе: длины страниц подставляются вместо чтения по сайту.
+     */
+    private IndexStatistics statistics(Site site) {
+        int[] lengths = new int[pages + 1];
+        Random random = new Random(42);
+        for (int pageId = 1; pageId <= pages; pageId++) {
+            lengths[pageId] = 50 + random.nextInt(2000);
+        }
+        IndexStatistics statistics = new IndexStatistics(new JdbcTemplate(new SimpleDriverDataSource()), null) {
+            @Override
+            protected void loadPageLengths(int siteId, PageLengths pageLengths) {
+                for (int pageId = 1; pageId <= pages; pageId++) {
+                    pageLengths.put(pageId, lengths[pageId]);
+                }
+            }
+        };
+        for (int pageId = 1; pageId <= pages; pageId++) {
+            statistics.addPage(site.getId(), pageId, lengths[pageId]);
+        }
+        return statistics;
+    }
+
+    private RankingEngine rankingEngine(IndexStatistics statistics) {
+        if (engine.equals("sum")) {
+            return new SumRankingEngine();
+        }
+        return new Bm25RankingEngine(statistics, new SearchEngineProperties());
+    }
+
+    @Benchmark
+    public RankedPages rank() {
+        return searchService.rankPages(lemmas, "", limit);
+    }
+
+    /**
+     * Индекс поверх готовых постингов: идентификатор леммы - номер постинг-листа.
+     */
+    private record CorpusIndex(Postings[] postings) implements InvertedIndex {
+
+        @Override
+        public PostingMatch intersect(int[] lemmaIds) {
+            Postings[] lists = new Postings[lemmaIds.length];
+            for (int i = 0; i < lemmaIds.length; i++) {
+                lists[i] = postings[lemmaIds[i]];
+            }
+            return PostingIntersection.intersect(lists);
+        }
+
+        @Override
+        public void add(int lemmaId, int pageId, float rank) {
+        }
+
+        @Override
+        public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        }
+
+        @Override
+        public void removeLemmas(Collection<Integer> lemmaIds) {
+        }
+    }
+}
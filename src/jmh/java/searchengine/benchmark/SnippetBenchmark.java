@@ -0,0 +1,86 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.SearchEngineProperties;
+import searchengine.services.lemmatization.LemmaService;
+import searchengine.services.search.SnippetBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сниппет для одного результата поиска: прежний вариант (split по пробелам,
+ * подстрока первой леммы, подсветка по префиксу) против потокового построителя
+ * с лемматизацией и скользящим окном.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    @Param({"ru-library-news.html", "ru-catalog-section.html"})
+    public String page;
+
+    @Param({"библиотека книги читатели"})
+    public String query;
+
+    private SnippetBuilder snippetBuilder;
+    private String text;
+    private List<String> lemmas;
+
+    @Setup
+    public void setUp() {
+        LemmaService lemmaService = Fixtures.lemmaService();
+        snippetBuilder = new SnippetBuilder(lemmaService, new SearchEngineProperties());
+        text = Jsoup.parse(Fixtures.html(page)).text();
+        lemmas = List.copyOf(lemmaService.getLemmas(query).keySet());
+    }
+
+    @Benchmark
+    public String splitAndPrefix() {
+        return legacySnippet(text, lemmas);
+    }
+
+    @Benchmark
+    public String slidingWindow() {
+        return snippetBuilder.build(text, lemmas);
+    }
+
+    private static String legacySnippet(String text, List<String> lemmas) {
+        String lemma = lemmas.get(0).toLowerCase();
+        String[] words = text.split("\\s+");
+
+        int lemmaIndex = -1;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].toLowerCase().contains(lemma)) {
+                lemmaIndex = i;
+                break;
+            }
+        }
+        if (lemmaIndex == -1) {
+            return "";
+        }
+
+        int start = Math.max(0, lemmaIndex - 10);
+        int end = Math.min(words.length, lemmaIndex + 11);
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) snippet.append("... ");
+        for (int i = start; i < end; i++) {
+            String word = words[i];
+            boolean isLemma = lemmas.stream()
+                    .anyMatch(l -> word.toLowerCase().startsWith(l.toLowerCase()));
+            if (isLemma) {
+                snippet.append("<b>").append(word).append("</b>");
+            } else {
+                snippet.append(word);
+            }
+            if (i < end - 1) snippet.append(" ");
+        }
+        if (end < words.length) snippet.append(" ...");
+        return snippet.toString();
+    }
+}
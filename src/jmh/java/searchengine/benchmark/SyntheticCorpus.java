@@ -0,0 +1,51 @@
+package searchengine.benchmark;
+
+import searchengine.services.search.index.Postings;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетический корпус постинг-листов: лемма встречается на заданной доле
+ * из {@code pages} страниц, страницы выбираются случайно с фиксированным зерном,
+ * ранги - частоты от 1 до 20. Повторяет форму реального индекса без БД.
+ */
+final class SyntheticCorpus {
+
+    private final int pages;
+
+    SyntheticCorpus(int pages) {
+        this.pages = pages;
+    }
+
+    Postings postings(double share, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] pageIds = new int[(int) Math.max(16, pages * share * 1.2)];
+        float[] ranks = new float[pageIds.length];
+        int size = 0;
+        for (int page = 1; page <= pages; page++) {
+            if (random.nextDouble() >= share) {
+                continue;
+            }
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size << 1);
+                ranks = Arrays.copyOf(ranks, size << 1);
+            }
+            pageIds[size] = page;
+            ranks[size] = 1 + random.nextInt(20);
+            size++;
+        }
+        return new Postings(Arrays.copyOf(pageIds, size), Arrays.copyOf(ranks, size));
+    }
+
+    /**
+     * Постинги запроса с долями страниц от самой редкой леммы к самой частой.
+     */
+    Postings[] query(double... shares) {
+        Postings[] lists = new Postings[shares.length];
+        for (int i = 0; i < shares.length; i++) {
+            lists[i] = postings(shares[i], 31L * (i + 1) + pages);
+        }
+        return lists;
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Getter
 @Setter
@@ -22,4 +24,137 @@ public class SearchEngineProperties {
     private int timeout;
 
     private int maxDepth;
+
+    private int morphologyCacheSize = 200_000;
+
+    private boolean compressContent = true;
+
+    private int queryCacheSize = 10_000;
+
+    private Pipeline pipeline = new Pipeline();
+
+    private Frontier frontier = new Frontier();
+
+    private Snippet snippet = new Snippet();
+
+    private Bm25 bm25 = new Bm25();
+
+    private Cursor cursor = new Cursor();
+
+    private Budget budget = new Budget();
+
+    public enum FetcherMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    public enum SeenSetMode {
+        EXACT,
+        BLOOM
+    }
+
+    @Getter
+    @Setter
+    public static class Pipeline {
+
+        private FetcherMode fetcher = FetcherMode.PLATFORM;
+
+        private int fetchThreads = 4;
+
+        private int virtualFetchers = 256;
+
+        private int parseThreads = 2;
+
+        private int lemmatizeThreads = Runtime.getRuntime().availableProcessors();
+
+        private int queueCapacity = 256;
+
+        private int batchSize = 50;
+
+        private SeenSetMode seenSet = SeenSetMode.EXACT;
+
+        private long expectedUrls = 1_000_000;
+
+        private double bloomFalsePositiveRate = 0.001;
+    }
+
+    @Getter
+    @Setter
+    public static class Frontier {
+
+        private int maxPages;
+
+        private List<UrlPriority> priorities = new ArrayList<>();
+
+        private String checkpointDir = "checkpoints";
+
+        /** Контрольная точка пишется во время обхода через столько адресов из очереди... */
+        private int checkpointEvery = 1000;
+
+        /** ...или через такой промежуток времени, что наступит раньше */
+        private Duration checkpointInterval = Duration.ofSeconds(30);
+
+        private boolean resume = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Snippet {
+
+        private int fragments = 3;
+
+        private int fragmentWords = 24;
+
+        private int maxChars = 200_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Bm25 {
+
+        /** Насыщение вклада частоты леммы на странице */
+        private double k1 = 1.2;
+
+        /** Доля нормировки по длине страницы: 0 - без нормировки, 1 - полная */
+        private double b = 0.75;
+    }
+
+    /**
+     * Общие для всех сайтов лимиты одновременной работы обхода.
+     */
+    @Getter
+    @Setter
+    public static class Budget {
+
+        /** Сколько сайтов индексируется одновременно, остальные ждут в очереди */
+        private int jobs = 4;
+
+        private int fetch = 32;
+
+        private int lemmatize = Runtime.getRuntime().availableProcessors();
+
+        /** Одновременные пакетные записи, должно быть меньше пула соединений */
+        private int database = 8;
+    }
+
+    @Getter
+    @Setter
+    public static class Cursor {
+
+        /** Сколько лучших страниц замораживается для листания курсором */
+        private int maxResults = 1_000;
+
+        private int maxCursors = 10_000;
+
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class UrlPriority {
+
+        private String pattern;
+
+        private int priority;
+    }
 }
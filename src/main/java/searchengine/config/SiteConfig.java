@@ -10,4 +10,9 @@ import lombok.*;
 public class SiteConfig {
     private String url;
     private String name;
+
+    /** Лимиты сайта в общем бюджете индексации, 0 - только справедливая доля */
+    private int fetchLimit;
+    private int lemmatizeLimit;
+    private int databaseLimit;
 }
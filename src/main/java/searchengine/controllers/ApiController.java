@@ -1,14 +1,25 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import searchengine.dto.indexing.IndexingJobsResponse;
 import searchengine.dto.response.IndexingResponse;
+import searchengine.dto.searching.SearchExplain;
 import searchengine.dto.searching.SearchingResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.search.SearchService;
+import searchengine.services.search.SearchStream;
 import searchengine.services.indexing.IndexingService;
 import searchengine.services.statistics.impl.StatisticsServiceImpl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api")
@@ -17,10 +28,11 @@ public class ApiController {
     private final IndexingService indexingService;
     private final StatisticsServiceImpl statisticsServiceImpl;
     private final SearchService searchService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/startIndexing")
-    public IndexingResponse startIndexing() {
-        indexingService.startIndexing();
+    public IndexingResponse startIndexing(@RequestParam(defaultValue = "false") boolean incremental) {
+        indexingService.startIndexing(incremental);
         return new IndexingResponse(true);
     }
 
@@ -35,6 +47,17 @@ public class ApiController {
         return new IndexingResponse(true);
     }
 
+    @GetMapping("/indexing/jobs")
+    public IndexingJobsResponse indexingJobs() {
+        return new IndexingJobsResponse(true, indexingService.jobs());
+    }
+
+    @PostMapping("/indexing/jobs/{id}/cancel")
+    public IndexingResponse cancelIndexingJob(@PathVariable long id) {
+        indexingService.cancelJob(id);
+        return new IndexingResponse(true);
+    }
+
     @PostMapping("/indexPage")
     public IndexingResponse indexPage(@RequestParam String url) {
         indexingService.indexPage(url);
@@ -42,10 +65,66 @@ public class ApiController {
     }
 
     @GetMapping("/search")
-    public SearchingResponse search(@RequestParam String query,
+    public SearchingResponse search(@RequestParam(required = false) String query,
                                     @RequestParam(defaultValue = "") String site,
                                     @RequestParam(defaultValue = "0") int offset,
-                                    @RequestParam(defaultValue = "20") int limit) {
-        return searchService.search(query, site, offset, limit);
+                                    @RequestParam(defaultValue = "20") int limit,
+                                    @RequestParam(defaultValue = "false") boolean withCursor,
+                                    @RequestParam(defaultValue = "") String cursor)
+            throws MissingServletRequestParameterException {
+        return cursor.isEmpty()
+                ? searchService.search(requireQuery(query), site, offset, limit, withCursor)
+                : searchService.next(cursor, limit);
+    }
+
+    /**
+     * Результаты построчно в NDJSON по мере готовности сниппетов. Общее число
+     * результатов и токен следующей страницы передаются в заголовках.
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> searchStream(@RequestParam(required = false) String query,
+                                                              @RequestParam(defaultValue = "") String site,
+                                                              @RequestParam(defaultValue = "0") int offset,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestParam(defaultValue = "false") boolean withCursor,
+                                                              @RequestParam(defaultValue = "") String cursor)
+            throws MissingServletRequestParameterException {
+        SearchStream stream = searchService.stream(cursor.isEmpty() ? requireQuery(query) : "",
+                site, cursor, withCursor, offset, limit);
+        StreamingResponseBody body = out -> searchService.forEachResult(stream, data -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(data));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header("X-Total-Count", Long.toString(stream.count()));
+        if (stream.cursor() != null) {
+            response.header("X-Search-Cursor", stream.cursor());
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/search/explain")
+    public SearchExplain explain(@RequestParam String query,
+                                 @RequestParam(defaultValue = "") String site,
+                                 @RequestParam(defaultValue = "0") int offset,
+                                 @RequestParam(defaultValue = "20") int limit) {
+        return searchService.explain(query, site, offset, limit);
+    }
+
+    /**
+     * Запрос обязателен, пока не передан курсор: без параметра - прежняя ошибка Spring,
+     * пустой запрос отклоняет сервис поиска.
+     */
+    private static String requireQuery(String query) throws MissingServletRequestParameterException {
+        if (query == null) {
+            throw new MissingServletRequestParameterException("query", "String");
+        }
+        return query;
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class IndexingJobProgress {
+    private long id;
+    private String url;
+    private String name;
+    private String state;
+    private boolean incremental;
+    private boolean singlePage;
+    private Long startedAt;
+    private Long finishedAt;
+    private int queued;
+    private int fetched;
+    private int parsed;
+    private int lemmatized;
+    private int persisted;
+    private int unchanged;
+    private int failed;
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class IndexingJobsResponse {
+    private boolean result;
+    private List<IndexingJobProgress> jobs;
+}
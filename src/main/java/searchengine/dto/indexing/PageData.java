@@ -1,6 +0,0 @@
-package searchengine.dto.indexing;
-
-import org.jsoup.Connection;
-
-public record PageData(Connection connection, int statusCode) {
-}
@@ -0,0 +1,7 @@
+package searchengine.dto.indexing;
+
+import searchengine.model.Page;
+import searchengine.services.lemmatization.LemmaCounts;
+
+public record PageLemmas(Page page, LemmaCounts lemmas) {
+}
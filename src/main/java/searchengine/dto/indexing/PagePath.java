@@ -0,0 +1,7 @@
+package searchengine.dto.indexing;
+
+/**
+ * Идентификатор и путь сохранённой страницы.
+ */
+public record PagePath(Integer id, String path) {
+}
@@ -0,0 +1,8 @@
+package searchengine.dto.indexing;
+
+/**
+ * Сохранённое состояние страницы, по которому повторный обход решает,
+ * изменилась ли она с прошлой индексации.
+ */
+public record PageState(Integer id, String etag, String lastModified, Long contentHash) {
+}
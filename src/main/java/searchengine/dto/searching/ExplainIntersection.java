@@ -0,0 +1,17 @@
+package searchengine.dto.searching;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ExplainIntersection {
+    private String site;
+    /** Леммы в порядке обхода пересечения, от самого короткого постинг-листа */
+    private List<String> lemmas;
+    /** Длины постинг-листов в порядке {@code lemmas}; null, если пересекала БД */
+    private List<Integer> postingSizes;
+    private int candidates;
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.searching;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ExplainLemma {
+    private String site;
+    private String lemma;
+    private int frequency;
+    /** Порог частоты: 70% страниц сайта */
+    private double threshold;
+}
@@ -0,0 +1,21 @@
+package searchengine.dto.searching;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class SearchExplain {
+    private String query;
+    private String site;
+    private List<ExplainLemma> lemmas = new ArrayList<>();
+    private List<ExplainLemma> droppedLemmas = new ArrayList<>();
+    private List<ExplainIntersection> intersections = new ArrayList<>();
+    private long count;
+    private int results;
+    private Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private List<SearchingData> data;
+}
@@ -15,4 +15,6 @@ public class SearchingResponse {
     private String result;
     private Long count;
     private List<SearchingData> data;
+    /** Токен следующей страницы результатов, null на последней странице */
+    private String cursor;
 }
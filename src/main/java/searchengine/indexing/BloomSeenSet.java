@@ -0,0 +1,60 @@
+package searchengine.indexing;
+
+/**
+ * Фильтр Блума фиксированного размера для очень больших сайтов: память ограничена
+ * заранее ({@code expectedUrls} и доля ложных срабатываний), но с заданной вероятностью
+ * новая страница будет принята за уже виденную и не попадёт в обход.
+ */
+class BloomSeenSet implements UrlSeenSet {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashes;
+    private int size;
+
+    BloomSeenSet(long expectedUrls, double falsePositiveRate) {
+        long n = Math.max(1, expectedUrls);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * ln2));
+    }
+
+    @Override
+    public synchronized boolean add(String path) {
+        long fp = UrlSeenSet.fingerprint(path);
+        // двойное хеширование: h1 + i * h2 по двум половинам отпечатка
+        long h2 = Long.rotateLeft(fp, 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(fp + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+        if (added) size++;
+        return added;
+    }
+
+    @Override
+    public synchronized boolean contains(String path) {
+        long fp = UrlSeenSet.fingerprint(path);
+        long h2 = Long.rotateLeft(fp, 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(fp + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+}
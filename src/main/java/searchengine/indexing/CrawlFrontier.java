@@ -0,0 +1,80 @@
+package searchengine.indexing;
+
+import searchengine.config.SearchEngineProperties;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Очередь обхода сайта: сначала адреса с большим приоритетом по шаблону URL,
+ * затем менее глубокие. Следит за бюджетом страниц и глубины.
+ */
+final class CrawlFrontier {
+
+    private static final Comparator<CrawlUrl> ORDER = Comparator
+            .comparingInt(CrawlUrl::priority).reversed()
+            .thenComparingInt(CrawlUrl::depth);
+
+    private final BlockingQueue<CrawlUrl> queue = new PriorityBlockingQueue<>(64, ORDER);
+    private final List<Rule> rules;
+    private final int maxDepth;
+    private final int maxPages;
+    private final AtomicInteger admitted = new AtomicInteger();
+
+    private record Rule(Pattern pattern, int priority) {
+    }
+
+    CrawlFrontier(SearchEngineProperties properties) {
+        SearchEngineProperties.Frontier config = properties.getFrontier();
+        this.rules = config.getPriorities().stream()
+                .map(p -> new Rule(Pattern.compile(p.getPattern()), p.getPriority()))
+                .toList();
+        this.maxDepth = properties.getMaxDepth();
+        this.maxPages = config.getMaxPages();
+    }
+
+    BlockingQueue<CrawlUrl> queue() {
+        return queue;
+    }
+
+    boolean canDescend(int depth) {
+        return depth < maxDepth;
+    }
+
+    /**
+     * Учитывает в бюджете страницы, уже сохранённые в БД при продолжении обхода.
+     */
+    void reserve(int pages) {
+        admitted.addAndGet(pages);
+    }
+
+    /**
+     * @return адрес для постановки в очередь или {@code null}, если исчерпан бюджет
+     */
+    CrawlUrl admit(String path, int depth) {
+        if (depth > maxDepth) {
+            return null;
+        }
+        if (maxPages > 0 && admitted.incrementAndGet() > maxPages) {
+            return null;
+        }
+        return new CrawlUrl(path, depth, priorityOf(path));
+    }
+
+    void push(CrawlUrl url) {
+        queue.add(url);
+    }
+
+    private int priorityOf(String path) {
+        for (Rule rule : rules) {
+            if (rule.pattern().matcher(path).matches()) {
+                return rule.priority();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,8 @@
+package searchengine.indexing;
+
+/**
+ * Элемент конвейера, привязанный к адресу из очереди обхода.
+ */
+interface CrawlItem {
+    CrawlUrl url();
+}
@@ -0,0 +1,471 @@
+package searchengine.indexing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import searchengine.config.SearchEngineProperties;
+import searchengine.dto.indexing.PageLemmas;
+import searchengine.dto.indexing.PageState;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.services.lemmatization.LemmaCounts;
+import searchengine.services.lemmatization.LemmaService;
+import searchengine.services.siteops.BatchIndexWriter;
+import searchengine.services.siteops.PageContentStore;
+import searchengine.services.siteops.SiteDataService;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обход одного сайта конвейером из четырёх стадий:
+ * загрузка страниц - разбор и извлечение ссылок - лемматизация - пакетная запись в БД.
+ * Стадии связаны ограниченными очередями, найденные ссылки попадают
+ * обратно в приоритетную очередь обхода {@link CrawlFrontier}. Обход завершается, когда
+ * все поставленные в очередь адреса прошли конвейер до конца. Незавершённые адреса
+ * периодически и при остановке сохраняются в контрольную точку, так что обход
+ * продолжается и после остановки, и после аварийного завершения процесса.
+ * <p>
+ * При инкрементальном обходе страницы запрашиваются условно по ETag и Last-Modified;
+ * страницы с ответом 304 или прежним хешем текста не лемматизируются заново,
+ * ссылки из них берутся из сохранённого HTML. Уже сохранённая страница, загруженная
+ * заново, переписывается на месте с тем же id; при ошибке загрузки она остаётся как была.
+ * Страницы с ответом 404 или 410 удаляются. Если обход прошёл до конца без ошибок, остановки,
+ * продолжения с контрольной точки и упора в бюджет, удаляются и сохранённые страницы,
+ * до которых он не дошёл по ссылкам.
+ * <p>
+ * Загрузки, лемматизация и пакетная запись занимают разрешения общего {@link WorkerBudget},
+ * поэтому одновременные обходы разных сайтов делят сеть, процессор и пул соединений.
+ */
+@Slf4j
+public class CrawlPipeline {
+
+    private final SearchEngineProperties properties;
+    private final LemmaService lemmaService;
+    private final SiteDataService service;
+    private final BatchIndexWriter writer;
+    private final PageContentStore contentStore;
+    private final HostPolitenessScheduler politeness;
+    private final FrontierCheckpoints checkpoints;
+    private final WorkerBudget budget;
+
+    private final Site site;
+    private final String root;
+    private final LinkExtractor links;
+    private final String startPath;
+    private final boolean followLinks;
+    private final boolean incremental;
+    private final boolean virtualFetchers;
+
+    private final UrlSeenSet seen;
+    private final CrawlFrontier frontier;
+    private final Map<String, CrawlUrl> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    /** Сохранённые страницы, на которые сайт ответил 404 или 410 */
+    private final Set<Integer> gone = ConcurrentHashMap.newKeySet();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+    private volatile long lastCheckpoint = System.nanoTime();
+
+    private final Timer fetchLatency;
+    private final Counter fetchedBytes;
+    private final DistributionSummary pageLemmas;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private final PipelineStage<CrawlUrl> fetchStage;
+    private final PipelineStage<FetchedPage> parseStage;
+    private final PipelineStage<ParsedPage> lemmatizeStage;
+    private final PipelineStage<LemmatizedPage> persistStage;
+    private final List<PipelineStage<?>> stages;
+
+    private volatile boolean stopped;
+    private volatile boolean truncated;
+    private boolean resumed;
+
+    public CrawlPipeline(SearchEngineProperties properties, LemmaService lemmaService,
+                         SiteDataService service, BatchIndexWriter writer, PageContentStore contentStore,
+                         HostPolitenessScheduler politeness, FrontierCheckpoints checkpoints,
+                         WorkerBudget budget, MeterRegistry meterRegistry,
+                         Site site, String startPath, boolean followLinks, boolean incremental) {
+        this.properties = properties;
+        this.lemmaService = lemmaService;
+        this.service = service;
+        this.writer = writer;
+        this.contentStore = contentStore;
+        this.politeness = politeness;
+        this.checkpoints = checkpoints;
+        this.budget = budget;
+        this.site = site;
+        this.root = site.getUrl();
+        this.links = new LinkExtractor(root);
+        // страницы хранятся по пути от корня, как и найденные на них ссылки
+        this.startPath = startPath.startsWith(root) ? links.toPath(startPath) : startPath;
+        this.followLinks = followLinks;
+        this.incremental = incremental;
+
+        SearchEngineProperties.Pipeline config = properties.getPipeline();
+        this.virtualFetchers = config.getFetcher() == SearchEngineProperties.FetcherMode.VIRTUAL;
+        this.seen = UrlSeenSet.create(config);
+        this.frontier = new CrawlFrontier(properties);
+        String name = site.getName();
+        fetchLatency = Timer.builder("indexing.fetch").tag("site", name).register(meterRegistry);
+        fetchedBytes = Counter.builder("indexing.fetch.bytes").baseUnit("bytes").tag("site", name)
+                .register(meterRegistry);
+        pageLemmas = DistributionSummary.builder("indexing.page.lemmas").tag("site", name)
+                .register(meterRegistry);
+        fetchStage = new PipelineStage<>("fetch", name, frontier.queue(),
+                virtualFetchers ? config.getVirtualFetchers() : config.getFetchThreads(),
+                1, this::fetch, this::failed, meterRegistry);
+        parseStage = new PipelineStage<>("parse", name, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                config.getParseThreads(), 1, this::parse, this::failed, meterRegistry);
+        lemmatizeStage = new PipelineStage<>("lemmatize", name, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                config.getLemmatizeThreads(), 1, this::lemmatize, this::failed, meterRegistry);
+        persistStage = new PipelineStage<>("persist", name, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                1, config.getBatchSize(), this::persist, this::persistFailed, meterRegistry);
+        stages = List.of(fetchStage, parseStage, lemmatizeStage, persistStage);
+    }
+
+    /**
+     * Запускает обход и блокируется до его окончания или остановки.
+     */
+    public void run() throws InterruptedException {
+        log.info("Pipeline started for {} from {}", site.getName(), startPath);
+        if (followLinks && !incremental) {
+            service.forEachPagePath(site, seen::add);
+            frontier.reserve(seen.size());
+            log.debug("Seen set for {} seeded with {} paths", site.getName(), seen.size());
+        }
+        List<CrawlUrl> restored = followLinks ? checkpoints.load(root) : List.of();
+        if (restored.isEmpty()) {
+            seen.add(startPath);
+            enqueue(startPath, 0);
+        } else {
+            resumed = true;
+            restored.stream()
+                    .filter(url -> seen.add(url.path()))
+                    .forEach(url -> enqueue(url.path(), url.depth()));
+            log.info("Resumed {} from checkpoint: {} urls", site.getName(), inFlight.size());
+        }
+        if (inFlight.isEmpty()) {
+            finished.countDown();
+        }
+        String threadPrefix = "crawler-" + site.getId();
+        fetchStage.start(threadPrefix, virtualFetchers);
+        parseStage.start(threadPrefix, false);
+        lemmatizeStage.start(threadPrefix, false);
+        persistStage.start(threadPrefix, false);
+        try {
+            finished.await();
+        } finally {
+            stages.forEach(PipelineStage::stop);
+            for (PipelineStage<?> stage : stages) {
+                stage.awaitTermination();
+            }
+            stages.forEach(stage -> log.info("Pipeline {} - {}", site.getName(), stage.report()));
+            if (incremental) {
+                log.info("Pipeline {} - unchanged pages: {}", site.getName(), unchanged.get());
+            }
+            if (followLinks) {
+                if (stopped && !inFlight.isEmpty()) {
+                    checkpoints.save(root, List.copyOf(inFlight.values()));
+                    log.info("Saved frontier checkpoint for {}: {} urls", site.getName(), inFlight.size());
+                } else {
+                    checkpoints.delete(root);
+                }
+            }
+        }
+        if (incremental) {
+            deleteMissingPages();
+        }
+    }
+
+    /**
+     * Удаляет пропавшие с сайта страницы. Не дошедшие по ссылкам страницы удаляются, только
+     * если обход прошёл весь сайт: иначе в {@link #seen} нет части живых страниц. Для фильтра
+     * Блума ложное совпадение оставляет пропавшую страницу до следующего обхода.
+     */
+    private void deleteMissingPages() {
+        List<Integer> unreached = followLinks && !stopped && !resumed && !truncated && failed.get() == 0
+                ? service.findPageIdsNotReached(site, seen::contains)
+                : List.of();
+        Set<Integer> missing = new HashSet<>(gone);
+        missing.addAll(unreached);
+        if (!missing.isEmpty()) {
+            writer.deletePages(site, List.copyOf(missing));
+        }
+        log.info("Pipeline {} - deleted pages: {} gone, {} unreached", site.getName(), gone.size(), unreached.size());
+    }
+
+    public void stop() {
+        stopped = true;
+        finished.countDown();
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public CrawlProgress progress() {
+        return new CrawlProgress(inFlight.size(), fetchStage.processed(), parseStage.processed(),
+                lemmatizeStage.processed(), persistStage.processed(), unchanged.get(), failed.get());
+    }
+
+    private void fetch(List<CrawlUrl> urls) throws IOException, InterruptedException {
+        checkpoint(urls.size());
+        for (CrawlUrl url : urls) {
+            String abs = checkAbsoluteLink(url.path());
+            PageState previous = incremental || !followLinks
+                    ? service.findPageState(site, url.path()).orElse(null)
+                    : null;
+            politeness.acquire(URI.create(abs).getHost());
+            Connection.Response response;
+            try {
+                response = fetchHtml(abs, incremental ? previous : null);
+            } catch (HttpStatusException e) {
+                if (!incremental || !isGone(e.getStatusCode())) {
+                    throw e;
+                }
+                // битая ссылка при инкрементальном обходе - не ошибка; сохранённую страницу удалим
+                if (previous != null) {
+                    gone.add(previous.id());
+                }
+                complete(List.of(url));
+                continue;
+            }
+            if (previous != null && response != null
+                    && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Optional<String> stored = contentStore.find(previous.id());
+                if (stored.isPresent()) {
+                    parseStage.getQueue().put(new FetchedPage(url, response.statusCode(),
+                            Jsoup.parse(stored.get(), abs), previous, null, null, true));
+                    continue;
+                }
+                politeness.acquire(URI.create(abs).getHost());
+                response = fetchHtml(abs, null);
+            }
+            // 304 без тела на безусловный запрос индексировать нечего
+            if (response == null || response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                complete(List.of(url));
+                continue;
+            }
+            fetchedBytes.increment(response.bodyAsBytes().length);
+            Document doc = response.parse();
+            parseStage.getQueue().put(new FetchedPage(url, response.statusCode(), doc, previous,
+                    response.header("ETag"), response.header("Last-Modified"), false));
+        }
+    }
+
+    /**
+     * Пишет контрольную точку каждые {@code checkpoint-every} адресов из очереди или раз в
+     * {@code checkpoint-interval}. Одновременно пишет только один поток загрузки.
+     */
+    private void checkpoint(int taken) {
+        if (!followLinks) {
+            return;
+        }
+        SearchEngineProperties.Frontier config = properties.getFrontier();
+        long every = Math.max(1, config.getCheckpointEvery());
+        long count = dequeued.addAndGet(taken);
+        boolean due = count / every != (count - taken) / every
+                || System.nanoTime() - lastCheckpoint >= config.getCheckpointInterval().toNanos();
+        if (!due || !checkpointing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            checkpoints.save(root, List.copyOf(inFlight.values()));
+            lastCheckpoint = System.nanoTime();
+        } finally {
+            checkpointing.set(false);
+        }
+    }
+
+    private void parse(List<FetchedPage> fetchedPages) throws InterruptedException {
+        for (FetchedPage fetched : fetchedPages) {
+            CrawlUrl url = fetched.url();
+            Document doc = fetched.document();
+            if (followLinks && frontier.canDescend(url.depth())) {
+                getChildLinks(doc)
+                        .forEach(link -> enqueue(link, url.depth() + 1));
+            }
+            if (fetched.notModified()) {
+                unchanged.incrementAndGet();
+                complete(List.of(url));
+                continue;
+            }
+            String title = doc.title();
+            String text = doc.body().text();
+            long contentHash = UrlSeenSet.fingerprint(title + "\n" + text);
+            PageState previous = fetched.previous();
+            if (incremental && previous != null && previous.contentHash() != null
+                    && previous.contentHash() == contentHash) {
+                unchanged.incrementAndGet();
+                complete(List.of(url));
+                continue;
+            }
+            Page page = Page.builder()
+                    .id(previous != null ? previous.id() : null)
+                    .site(site)
+                    .code(fetched.statusCode())
+                    .title(title)
+                    .text(text)
+                    .path(url.path())
+                    .etag(fetched.etag())
+                    .lastModified(fetched.lastModified())
+                    .contentHash(contentHash)
+                    .build();
+            byte[] content = contentStore.encode(doc.html());
+            lemmatizeStage.getQueue().put(new ParsedPage(url, page, content, title + " " + text));
+        }
+    }
+
+    private void lemmatize(List<ParsedPage> pages) throws InterruptedException {
+        for (ParsedPage parsed : pages) {
+            LemmaCounts lemmas;
+            budget.acquire(WorkerBudget.Resource.LEMMATIZE, site.getId());
+            try {
+                lemmas = lemmaService.countLemmas(parsed.text());
+            } finally {
+                budget.release(WorkerBudget.Resource.LEMMATIZE, site.getId());
+            }
+            pageLemmas.record(lemmas.size());
+            parsed.page().setLength((int) lemmas.total());
+            persistStage.getQueue().put(new LemmatizedPage(parsed.url(), parsed.page(), parsed.content(), lemmas));
+        }
+    }
+
+    private void persist(List<LemmatizedPage> batch) throws InterruptedException {
+        try {
+            budget.acquire(WorkerBudget.Resource.DATABASE, site.getId());
+            try {
+                write(batch);
+            } finally {
+                budget.release(WorkerBudget.Resource.DATABASE, site.getId());
+            }
+        } finally {
+            complete(batch);
+        }
+    }
+
+    private void write(List<LemmatizedPage> batch) {
+        writer.writePages(site,
+                batch.stream().map(page -> new PageLemmas(page.page(), page.lemmas())).toList(),
+                batch.stream().map(LemmatizedPage::content).toList());
+        service.updateStatusTime(site);
+    }
+
+    private <T extends CrawlItem> void failed(List<T> items, Exception e) {
+        failed.addAndGet(items.size());
+        service.updateLastError(site, e.getMessage());
+        complete(items);
+    }
+
+    private void persistFailed(List<LemmatizedPage> batch, Exception e) {
+        failed.addAndGet(batch.size());
+        service.updateLastError(site, e.getMessage());
+    }
+
+    private List<String> getChildLinks(Document doc) {
+        return links.extract(doc).stream()
+                .filter(seen::add)
+                .toList();
+    }
+
+    private void enqueue(String path, int depth) {
+        CrawlUrl url = frontier.admit(path, depth);
+        if (url == null) {
+            truncated = true;
+            log.debug("Crawl budget exhausted, skipping {}", path);
+            return;
+        }
+        inFlight.put(path, url);
+        frontier.push(url);
+    }
+
+    private void complete(List<? extends CrawlItem> items) {
+        for (CrawlItem item : items) {
+            inFlight.remove(item.url().path());
+        }
+        if (inFlight.isEmpty()) {
+            finished.countDown();
+        }
+    }
+
+    private static boolean isGone(int statusCode) {
+        return statusCode == HttpURLConnection.HTTP_NOT_FOUND || statusCode == HttpURLConnection.HTTP_GONE;
+    }
+
+    private String checkAbsoluteLink(String url) {
+        if (url.startsWith("https://")) {
+            return url;
+        }
+        if (!url.startsWith("/")) {
+            url = "/" + url;
+        }
+        return root + url;
+    }
+
+    /**
+     * Единственный запрос за страницей: ответ с не-HTML содержимым отбрасывается,
+     * тело HTML-ответа потом разбирается один раз. Для уже известной страницы
+     * запрос условный, ответ 304 возвращается как есть. Тело HTML читается целиком, пока
+     * занято разрешение бюджета загрузок.
+     */
+    private Connection.Response fetchHtml(String abs, PageState previous) throws IOException, InterruptedException {
+        Connection connection = Jsoup.connect(abs)
+                .userAgent(properties.getUserAgent())
+                .referrer(properties.getReferrer())
+                .timeout(properties.getTimeout())
+                .ignoreContentType(true);
+        if (previous != null) {
+            if (previous.etag() != null) {
+                connection.header("If-None-Match", previous.etag());
+            }
+            if (previous.lastModified() != null) {
+                connection.header("If-Modified-Since", previous.lastModified());
+            }
+            connection.ignoreHttpErrors(true);
+        }
+        budget.acquire(WorkerBudget.Resource.FETCH, site.getId());
+        try {
+            return execute(connection, abs);
+        } finally {
+            budget.release(WorkerBudget.Resource.FETCH, site.getId());
+        }
+    }
+
+    private Connection.Response execute(Connection connection, String abs) throws IOException {
+        long start = System.nanoTime();
+        Connection.Response response;
+        try {
+            response = connection.execute();
+        } finally {
+            fetchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return response;
+        }
+        if (response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), abs);
+        }
+
+        String contentType = response.contentType();
+        if (contentType == null || !contentType.startsWith("text/html")) {
+            log.warn("Skipping non-HTML content type: {} from {}", contentType, abs);
+            return null;
+        }
+        return response.bufferUp();
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.indexing;
+
+/**
+ * Снимок хода обхода сайта: сколько адресов ещё в работе и сколько прошло каждую стадию.
+ *
+ * @param queued    адреса в очереди обхода и внутри конвейера
+ * @param unchanged страницы без изменений при инкрементальном обходе
+ * @param failed    страницы, отброшенные из-за ошибки на любой стадии
+ */
+public record CrawlProgress(int queued, int fetched, int parsed, int lemmatized, int persisted,
+                            int unchanged, int failed) {
+
+    public static final CrawlProgress EMPTY = new CrawlProgress(0, 0, 0, 0, 0, 0, 0);
+}
@@ -0,0 +1,9 @@
+package searchengine.indexing;
+
+record CrawlUrl(String path, int depth, int priority) implements CrawlItem {
+
+    @Override
+    public CrawlUrl url() {
+        return this;
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.indexing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий лимит одновременных операций одного вида, поделённый между сайтами.
+ * Сайт получает не больше своей справедливой доли - ёмкости, делённой на число сайтов,
+ * которым сейчас нужен ресурс, - и не больше собственного лимита. Пока остальные сайты
+ * ресурс не запрашивают, один сайт может занять всю ёмкость.
+ * <p>
+ * Блокировка - {@link ReentrantLock}, чтобы ожидание не закрепляло виртуальные потоки загрузчиков.
+ * Разрешения выдаются только зарегистрированным сайтам: после {@link #unregister} и новые,
+ * и ожидающие запросы сайта завершаются {@link IllegalStateException}.
+ */
+final class FairShareLimiter {
+
+    private static final String NOT_REGISTERED = "Сайт %d не зарегистрирован в бюджете обхода";
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<Integer, Demand> sites = new HashMap<>();
+    private int used;
+
+    private static final class Demand {
+        private final int limit;
+        private int used;
+        private int waiting;
+
+        private Demand(int limit) {
+            this.limit = limit;
+        }
+
+        private boolean active() {
+            return used > 0 || waiting > 0;
+        }
+    }
+
+    FairShareLimiter(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * @param limit собственный лимит сайта, 0 - только справедливая доля
+     */
+    void register(int siteId, int limit) {
+        lock.lock();
+        try {
+            sites.putIfAbsent(siteId, new Demand(limit > 0 ? limit : Integer.MAX_VALUE));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void unregister(int siteId) {
+        lock.lock();
+        try {
+            Demand demand = sites.remove(siteId);
+            if (demand != null) {
+                used -= demand.used;
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void acquire(int siteId) throws InterruptedException {
+        lock.lock();
+        try {
+            Demand demand = registered(siteId);
+            demand.waiting++;
+            try {
+                while (used >= capacity || demand.used >= Math.min(demand.limit, share())) {
+                    released.await();
+                    if (sites.get(siteId) != demand) {
+                        throw new IllegalStateException(NOT_REGISTERED.formatted(siteId));
+                    }
+                }
+            } finally {
+                demand.waiting--;
+            }
+            demand.used++;
+            used++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(int siteId) {
+        lock.lock();
+        try {
+            Demand demand = sites.get(siteId);
+            if (demand != null && demand.used > 0) {
+                demand.used--;
+                used--;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int used() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Demand registered(int siteId) {
+        Demand demand = sites.get(siteId);
+        if (demand == null) {
+            throw new IllegalStateException(NOT_REGISTERED.formatted(siteId));
+        }
+        return demand;
+    }
+
+    private int share() {
+        long active = sites.values().stream().filter(Demand::active).count();
+        return (int) Math.max(1, (capacity + active - 1) / Math.max(active, 1));
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.indexing;
+
+import org.jsoup.nodes.Document;
+import searchengine.dto.indexing.PageState;
+
+/**
+ * @param previous     состояние страницы с прошлой индексации при инкрементальном обходе
+ * @param notModified  сервер ответил 304, документ восстановлен из сохранённого HTML
+ */
+record FetchedPage(CrawlUrl url, int statusCode, Document document, PageState previous,
+                   String etag, String lastModified, boolean notModified) implements CrawlItem {
+}
@@ -0,0 +1,85 @@
+package searchengine.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Сохраняет незавершённую часть очереди обхода остановленного сайта на диск,
+ * чтобы следующий запуск индексации продолжил обход, а не начинал его заново.
+ * Формат файла - строки {@code глубина<TAB>путь}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FrontierCheckpoints {
+
+    private final SearchEngineProperties properties;
+
+    public boolean exists(String siteUrl) {
+        return properties.getFrontier().isResume() && Files.exists(file(siteUrl));
+    }
+
+    public void delete(String siteUrl) {
+        try {
+            Files.deleteIfExists(file(siteUrl));
+        } catch (IOException e) {
+            log.warn("Failed to delete frontier checkpoint for {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    void save(String siteUrl, Collection<CrawlUrl> urls) {
+        Path target = file(siteUrl);
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (CrawlUrl url : urls) {
+                    out.write(url.depth() + "\t" + url.path());
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved frontier checkpoint for {}: {} urls", siteUrl, urls.size());
+        } catch (IOException e) {
+            log.warn("Failed to save frontier checkpoint for {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * @return пары путь-глубина; пустой список, если контрольной точки нет
+     */
+    List<CrawlUrl> load(String siteUrl) {
+        List<CrawlUrl> urls = new ArrayList<>();
+        if (!exists(siteUrl)) {
+            return urls;
+        }
+        try {
+            for (String line : Files.readAllLines(file(siteUrl), StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    urls.add(new CrawlUrl(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)), 0));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Failed to load frontier checkpoint for {}: {}", siteUrl, e.getMessage());
+        }
+        return urls;
+    }
+
+    private Path file(String siteUrl) {
+        return Path.of(properties.getFrontier().getCheckpointDir())
+                .resolve(Long.toHexString(UrlSeenSet.fingerprint(siteUrl)) + ".frontier");
+    }
+}
@@ -0,0 +1,35 @@
+package searchengine.indexing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Соблюдает паузу {@code waitingTime} между запросами к одному хосту,
+ * независимо от того, сколько потоков его обходят. Каждый запрос
+ * резервирует ближайший свободный слот хоста и ждёт его наступления.
+ */
+@Component
+@RequiredArgsConstructor
+public class HostPolitenessScheduler {
+
+    private final Map<String, AtomicLong> nextSlots = new ConcurrentHashMap<>();
+
+    private final SearchEngineProperties properties;
+
+    public void acquire(String host) throws InterruptedException {
+        long delay = properties.getWaitingTime().toNanos();
+        AtomicLong nextSlot = nextSlots.computeIfAbsent(host, h -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime();
+        long slot = Math.max(nextSlot.getAndAccumulate(now, (next, time) -> Math.max(next, time) + delay), now);
+        long wait = slot - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
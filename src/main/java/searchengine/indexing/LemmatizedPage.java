@@ -0,0 +1,7 @@
+package searchengine.indexing;
+
+import searchengine.model.Page;
+import searchengine.services.lemmatization.LemmaCounts;
+
+record LemmatizedPage(CrawlUrl url, Page page, byte[] content, LemmaCounts lemmas) implements CrawlItem {
+}
@@ -0,0 +1,55 @@
+package searchengine.indexing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Извлекает из страницы ссылки на другие HTML-страницы того же сайта
+ * в виде путей относительно корня сайта.
+ */
+@Slf4j
+public final class LinkExtractor {
+
+    private static final Pattern FILE_PATTERN =
+            Pattern.compile(".*\\.(pdf|jpg|jpeg|png|gif|bmp|doc|docx|xls|xlsx|ppt|pptx|webp)$"
+                    ,Pattern.CASE_INSENSITIVE);
+
+    private final String root;
+
+    public LinkExtractor(String root) {
+        this.root = root;
+    }
+
+    public List<String> extract(Document doc) {
+        List<String> links = new ArrayList<>();
+        for (Element el : doc.select("a[href]")) {
+            String absLink = el.attr("abs:href");
+
+            if (!absLink.startsWith(root) ||
+                    FILE_PATTERN.matcher(absLink).matches() ||
+                    absLink.contains("#")) {
+                log.debug("Skipping link {}", absLink);
+                continue;
+            }
+            links.add(toPath(absLink));
+        }
+        return links;
+    }
+
+    /**
+     * Путь ссылки относительно корня сайта; корень сайта - "/".
+     */
+    String toPath(String link) {
+        String shortLink = link.substring(root.length());
+
+        if (shortLink.isBlank()) shortLink = "/";
+        if (!shortLink.startsWith("/")) shortLink = "/" + shortLink;
+
+        return shortLink;
+    }
+}
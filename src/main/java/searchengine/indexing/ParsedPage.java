@@ -0,0 +1,6 @@
+package searchengine.indexing;
+
+import searchengine.model.Page;
+
+record ParsedPage(CrawlUrl url, Page page, byte[] content, String text) implements CrawlItem {
+}
@@ -0,0 +1,134 @@
+package searchengine.indexing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Стадия конвейера: несколько потоков забирают элементы из входной очереди
+ * пачками до {@code batchSize} и передают их обработчику. Следующая стадия
+ * получает результат через свою ограниченную очередь, поэтому медленная
+ * стадия притормаживает предыдущие.
+ */
+@Slf4j
+final class PipelineStage<I> {
+
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    @FunctionalInterface
+    interface Handler<I> {
+        void handle(List<I> items) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface FailureHandler<I> {
+        void failed(List<I> items, Exception e);
+    }
+
+    @Getter
+    private final String name;
+    @Getter
+    private final BlockingQueue<I> queue;
+    private final int threads;
+    private final int batchSize;
+    private final Handler<I> handler;
+    private final FailureHandler<I> failureHandler;
+    private final Timer latency;
+    private final Gauge depth;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger processed = new AtomicInteger();
+
+    private ExecutorService executor;
+    private volatile boolean stopped;
+
+    PipelineStage(String name, String site, BlockingQueue<I> queue, int threads, int batchSize,
+                  Handler<I> handler, FailureHandler<I> failureHandler, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = queue;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.failureHandler = failureHandler;
+        this.meterRegistry = meterRegistry;
+        this.latency = Timer.builder("indexing.pipeline.stage")
+                .tag("stage", name).tag("site", site)
+                .register(meterRegistry);
+        this.depth = Gauge.builder("indexing.pipeline.queue", queue, BlockingQueue::size)
+                .tag("stage", name).tag("site", site)
+                .register(meterRegistry);
+    }
+
+    void start(String threadPrefix, boolean virtual) {
+        ThreadFactory factory = virtual
+                ? Thread.ofVirtual().name(threadPrefix + "-" + name + "-", 1).factory()
+                : Thread.ofPlatform().name(threadPrefix + "-" + name + "-", 1).factory();
+        executor = Executors.newFixedThreadPool(threads, factory);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        meterRegistry.remove(depth);
+    }
+
+    void awaitTermination() throws InterruptedException {
+        if (executor != null) {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    int processed() {
+        return processed.get();
+    }
+
+    String report() {
+        return String.format("%s: processed=%d, queued=%d, mean=%.1fms, max=%.1fms", name, processed.get(),
+                queue.size(), latency.mean(TimeUnit.MILLISECONDS), latency.max(TimeUnit.MILLISECONDS));
+    }
+
+    private void work() {
+        List<I> batch = new ArrayList<>(batchSize);
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            try {
+                I first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (batchSize > 1) {
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                long start = System.nanoTime();
+                try {
+                    handler.handle(batch);
+                } finally {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                processed.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Stage {} failed: {}", name, e.getMessage());
+                failureHandler.failed(List.copyOf(batch), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
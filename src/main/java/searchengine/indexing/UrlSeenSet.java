@@ -0,0 +1,46 @@
+package searchengine.indexing;
+
+import searchengine.config.SearchEngineProperties;
+
+/**
+ * Множество уже встреченных адресов одного сайта. Хранит не сами строки,
+ * а их 64-битные отпечатки, поэтому память не зависит от длины URL.
+ */
+interface UrlSeenSet {
+
+    /**
+     * @return {@code true}, если адрес встретился впервые
+     */
+    boolean add(String path);
+
+    /**
+     * @return {@code true}, если адрес уже встречался; для фильтра Блума возможны ложные совпадения
+     */
+    boolean contains(String path);
+
+    int size();
+
+    static UrlSeenSet create(SearchEngineProperties.Pipeline config) {
+        return switch (config.getSeenSet()) {
+            case EXACT -> new FingerprintSeenSet();
+            case BLOOM -> new BloomSeenSet(config.getExpectedUrls(), config.getBloomFalsePositiveRate());
+        };
+    }
+
+    /**
+     * FNV-1a по символам строки с финальным перемешиванием из MurmurHash3.
+     */
+    static long fingerprint(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,60 @@
+package searchengine.indexing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+import searchengine.config.SiteConfig;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Общий для всех обходов бюджет одновременных загрузок, лемматизаций и пакетных записей в БД.
+ * Потоки стадий каждого сайта берут разрешение на единицу работы, поэтому сколько бы сайтов
+ * ни индексировалось одновременно, сеть, процессор и пул соединений нагружаются не больше
+ * заданного, а ёмкость делится между сайтами поровну с учётом лимитов из {@link SiteConfig}.
+ */
+@Component
+public class WorkerBudget {
+
+    public enum Resource {
+        FETCH,
+        LEMMATIZE,
+        DATABASE
+    }
+
+    private final Map<Resource, FairShareLimiter> limiters = new EnumMap<>(Resource.class);
+
+    public WorkerBudget(SearchEngineProperties properties, MeterRegistry meterRegistry) {
+        SearchEngineProperties.Budget budget = properties.getBudget();
+        limiters.put(Resource.FETCH, new FairShareLimiter(budget.getFetch()));
+        limiters.put(Resource.LEMMATIZE, new FairShareLimiter(budget.getLemmatize()));
+        limiters.put(Resource.DATABASE, new FairShareLimiter(budget.getDatabase()));
+        limiters.forEach((resource, limiter) -> {
+            String tag = resource.name().toLowerCase();
+            Gauge.builder("indexing.budget.used", limiter, FairShareLimiter::used)
+                    .tag("resource", tag).register(meterRegistry);
+            Gauge.builder("indexing.budget.capacity", limiter, FairShareLimiter::capacity)
+                    .tag("resource", tag).register(meterRegistry);
+        });
+    }
+
+    public void register(int siteId, SiteConfig config) {
+        limiters.get(Resource.FETCH).register(siteId, config.getFetchLimit());
+        limiters.get(Resource.LEMMATIZE).register(siteId, config.getLemmatizeLimit());
+        limiters.get(Resource.DATABASE).register(siteId, config.getDatabaseLimit());
+    }
+
+    public void unregister(int siteId) {
+        limiters.values().forEach(limiter -> limiter.unregister(siteId));
+    }
+
+    void acquire(Resource resource, int siteId) throws InterruptedException {
+        limiters.get(resource).acquire(siteId);
+    }
+
+    void release(Resource resource, int siteId) {
+        limiters.get(resource).release(siteId);
+    }
+}
@@ -29,6 +29,22 @@ public class Page {
     @Column(nullable = false)
     private Integer code;
 
-    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
-    private String content;
+    @Column(columnDefinition = "TEXT")
+    private String title;
+
+    @Column(name = "plain_text", columnDefinition = "TEXT")
+    private String text;
+
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    /** Число слов страницы, приведённых к леммам (без стоп-слов) */
+    @Column(name = "page_length", nullable = false)
+    @Builder.Default
+    private Integer length = 0;
 }
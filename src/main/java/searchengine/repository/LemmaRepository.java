@@ -5,32 +5,26 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import searchengine.model.Lemma;
-import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
 
-    @Modifying
-    @Query("UPDATE Lemma l SET l.frequency = l.frequency + 1 WHERE l.id = :id")
-    void incrementFrequencyById(@Param("id") Integer id);
-
-    @Modifying
-    @Query("UPDATE Lemma l SET l.frequency = l.frequency - 1 WHERE l.id = :id")
-    void decrementFrequencyById(@Param("id") Integer id);
+    @Query("SELECT l.id FROM Lemma l WHERE l.site.id = :siteId AND l.id IN :ids AND l.frequency <= 0")
+    List<Integer> findUnusedIds(@Param("siteId") Integer siteId, @Param("ids") Collection<Integer> ids);
 
     @Modifying
-    @Query("DELETE FROM Lemma l WHERE l.frequency <= 0")
-    void deleteAllByFrequencyZero();
-
+    @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId AND l.id IN :ids AND l.frequency <= 0")
+    int deleteUnused(@Param("siteId") Integer siteId, @Param("ids") Collection<Integer> ids);
 
     List<Lemma> findAllByLemma(String lemma);
 
-    Optional<Lemma> findByLemmaAndSite(String lemma, Site site);
-
-    void deleteAllBySiteId(Integer siteId);
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId")
+    int deleteAllBySiteId(@Param("siteId") Integer siteId);
 
-    Long countLemmaBySiteId(Integer siteId);
+    @Query("SELECT l.id FROM Lemma l WHERE l.site.id = :siteId")
+    List<Integer> findIdsBySiteId(@Param("siteId") Integer siteId);
 
 }
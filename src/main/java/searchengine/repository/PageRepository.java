@@ -3,25 +3,34 @@ package searchengine.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.PagePath;
+import searchengine.dto.indexing.PageState;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
-    Optional<Page> findByPath(String path);
+    @Modifying
+    @Query(value = "DELETE FROM page_content c USING page p WHERE c.page_id = p.id AND p.site_id = :siteId",
+            nativeQuery = true)
+    int deleteContentBySiteId(@Param("siteId") Integer siteId);
 
-    void deleteAllBySiteId(Integer id);
+    @Modifying
+    @Query("DELETE FROM Page p WHERE p.site.id = :siteId")
+    int deleteAllBySiteId(@Param("siteId") Integer siteId);
 
-    List<Page> findAllBySiteId(Integer id);
+    @Query("SELECT new searchengine.dto.indexing.PageState(p.id, p.etag, p.lastModified, p.contentHash) " +
+            "FROM Page p WHERE p.path = :path AND p.site = :site")
+    Optional<PageState> findStateByPathAndSite(@Param("path") String path, @Param("site") Site site);
 
-    Long countPageBySiteId(Integer id);
+    @Query("SELECT p.path FROM Page p WHERE p.site.id = :siteId")
+    Stream<String> streamPathsBySiteId(@Param("siteId") Integer siteId);
 
-    Optional<Page> findByPathAndSite(String path, Site site);
-
-    @Query("SELECT p.path FROM Page p WHERE p.path IN :paths")
-    List<String> findPathsByPathIn(List<String> paths);
+    @Query("SELECT new searchengine.dto.indexing.PagePath(p.id, p.path) FROM Page p WHERE p.site.id = :siteId")
+    Stream<PagePath> streamPagePathsBySiteId(@Param("siteId") Integer siteId);
 }
@@ -0,0 +1,102 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import searchengine.config.SiteConfig;
+import searchengine.dto.indexing.IndexingJobProgress;
+import searchengine.indexing.CrawlPipeline;
+import searchengine.indexing.CrawlProgress;
+
+import java.time.Instant;
+
+/**
+ * Индексация одного сайта или одной страницы: собственное состояние, отмена и ход обхода.
+ * Задача может быть отменена ещё в очереди, тогда обход не начинается.
+ */
+public class IndexingJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        FINISHED,
+        FAILED,
+        CANCELLED
+    }
+
+    @Getter
+    private final long id;
+    @Getter
+    private final SiteConfig site;
+    @Getter
+    private final boolean incremental;
+    private final boolean singlePage;
+
+    @Getter
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile CrawlPipeline pipeline;
+    private volatile CrawlProgress finalProgress = CrawlProgress.EMPTY;
+
+    IndexingJob(long id, SiteConfig site, boolean incremental, boolean singlePage) {
+        this.id = id;
+        this.site = site;
+        this.incremental = incremental;
+        this.singlePage = singlePage;
+    }
+
+    /**
+     * @return false, если задачу отменили, пока она ждала в очереди
+     */
+    synchronized boolean start(CrawlPipeline pipeline) {
+        if (cancelled) {
+            return false;
+        }
+        this.pipeline = pipeline;
+        this.state = State.RUNNING;
+        this.startedAt = Instant.now();
+        return true;
+    }
+
+    synchronized void finish(State state) {
+        if (pipeline != null) {
+            finalProgress = pipeline.progress();
+            pipeline = null;
+        }
+        this.state = cancelled && state != State.FINISHED ? State.CANCELLED : state;
+        this.finishedAt = Instant.now();
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    public IndexingJobProgress progress() {
+        CrawlPipeline running = pipeline;
+        CrawlProgress crawl = running != null ? running.progress() : finalProgress;
+        IndexingJobProgress progress = new IndexingJobProgress();
+        progress.setId(id);
+        progress.setUrl(site.getUrl());
+        progress.setName(site.getName());
+        progress.setState(state.name());
+        progress.setIncremental(incremental);
+        progress.setSinglePage(singlePage);
+        progress.setStartedAt(startedAt != null ? startedAt.toEpochMilli() : null);
+        progress.setFinishedAt(finishedAt != null ? finishedAt.toEpochMilli() : null);
+        progress.setQueued(crawl.queued());
+        progress.setFetched(crawl.fetched());
+        progress.setParsed(crawl.parsed());
+        progress.setLemmatized(crawl.lemmatized());
+        progress.setPersisted(crawl.persisted());
+        progress.setUnchanged(crawl.unchanged());
+        progress.setFailed(crawl.failed());
+        return progress;
+    }
+}
@@ -1,5 +1,6 @@
 package searchengine.services.indexing;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -7,114 +8,197 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.SearchEngineProperties;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexingJobProgress;
+import searchengine.exception.EntityNotFoundException;
 import searchengine.exception.IndexingException;
-import searchengine.indexing.WebCrawlerTask;
+import searchengine.indexing.CrawlPipeline;
+import searchengine.indexing.FrontierCheckpoints;
+import searchengine.indexing.HostPolitenessScheduler;
+import searchengine.indexing.WorkerBudget;
 import searchengine.model.*;
 import searchengine.repository.SiteRepository;
 import searchengine.services.lemmatization.LemmaService;
+import searchengine.services.siteops.BatchIndexWriter;
+import searchengine.services.siteops.PageContentStore;
 import searchengine.services.siteops.SiteDataService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * Планировщик индексации: каждый сайт индексируется отдельной задачей {@link IndexingJob}
+ * со своим состоянием и отменой. Одновременно выполняется не больше {@code budget.jobs}
+ * задач, а загрузки, лемматизация и запись всех задач делят общий {@link WorkerBudget}.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IndexingService {
-    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
 
     private static final String OUTSIDE_CONFIG_FILE =
             "Данная страница находится за пределами сайтов, указанных в конфигурационном файле";
     private static final String ALREADY_STARTED = "Индексация уже запущена";
     private static final String NOT_STARTED = "Индексация не запущена";
+    private static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+    private static final String JOB_NOT_FOUND = "Задача индексации не найдена";
+    private static final String JOB_FINISHED = "Задача индексации уже завершена";
 
     private final SearchEngineProperties properties;
     private final SiteDataService siteDataService;
     private final SiteRepository siteRepository;
     private final LemmaService lemmaService;
+    private final BatchIndexWriter writer;
+    private final PageContentStore contentStore;
+    private final HostPolitenessScheduler politeness;
+    private final FrontierCheckpoints checkpoints;
+    private final WorkerBudget budget;
+    private final MeterRegistry meterRegistry;
 
-    private ForkJoinPool pool = new ForkJoinPool();
+    /** Последняя задача каждого сайта по его адресу */
+    private final Map<String, IndexingJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
 
     private final SitesList sites;
 
+    /**
+     * @param incremental не удалять данные сайтов, а обойти их заново условными запросами
+     *                    и переиндексировать только изменившиеся страницы
+     */
     @Transactional
-    public void startIndexing() {
-        if (RUNNING.get()) {
-            throw new IndexingException(ALREADY_STARTED);
+    public void startIndexing(boolean incremental) {
+        List<IndexingJob> created = new ArrayList<>();
+        synchronized (jobs) {
+            if (isRunning()) {
+                throw new IndexingException(ALREADY_STARTED);
+            }
+            for (SiteConfig siteConfig : sites.getSites()) {
+                IndexingJob job = new IndexingJob(jobIds.incrementAndGet(), siteConfig, incremental, false);
+                jobs.put(siteConfig.getUrl(), job);
+                created.add(job);
+            }
         }
-        ExecutorService executorService = Executors.newFixedThreadPool(sites.getSites().size());
+        int concurrency = Math.max(1, Math.min(properties.getBudget().getJobs(), created.size()));
+        ExecutorService executorService =
+                Executors.newFixedThreadPool(concurrency, Thread.ofPlatform().name("indexing-job-", 1).factory());
 
-        for (SiteConfig siteConfig : sites.getSites()) {
-            siteDataService.deleteAllBySite(siteConfig);
-            Site entity = siteDataService.createSite(siteConfig);
-            siteDataService.updateStatus(entity, Status.INDEXING);
-            executorService.submit(
-                    () -> indexing(entity, entity.getUrl(), false)
-            );
+        int submitted = 0;
+        try {
+            for (IndexingJob job : created) {
+                SiteConfig siteConfig = job.getSite();
+                Site entity = incremental || checkpoints.exists(siteConfig.getUrl())
+                        ? siteDataService.findOrCreateSite(siteConfig)
+                        : siteDataService.recreateSite(siteConfig);
+                siteDataService.updateStatus(entity, Status.INDEXING);
+                executorService.submit(
+                        () -> indexing(job, entity, "/", false)
+                );
+                submitted++;
+            }
+        } finally {
+            created.subList(submitted, created.size()).forEach(job -> job.finish(IndexingJob.State.FAILED));
+            executorService.shutdown();
         }
-        executorService.shutdown();
     }
 
-    private void indexing(Site entity, String url, boolean isSinglePage) {
-        RUNNING.set(true);
-        log.info("Running set true for - {}", entity.getName());
-        log.info("Indexing started for: {}", entity.getName());
-
-
-        if (pool.isShutdown() || pool.isTerminated()) {
-            pool = new ForkJoinPool();
-            log.info("ForkJoinPool restarted");
-        }
-
-        ConcurrentHashMap<String, String> siteMap = new ConcurrentHashMap<>();
-        WebCrawlerTask task = new WebCrawlerTask(
-                siteMap, properties, lemmaService, siteDataService,
-                entity, 0, entity.getUrl(), url, isSinglePage
+    private void indexing(IndexingJob job, Site entity, String path, boolean isSinglePage) {
+        CrawlPipeline pipeline = new CrawlPipeline(
+                properties, lemmaService, siteDataService, writer, contentStore, politeness, checkpoints,
+                budget, meterRegistry, entity, path, !isSinglePage, job.isIncremental()
         );
-
-        log.info("FJP Invoked tree {} with root {}", task, entity.getName());
-        pool.invoke(task);
-        pool.shutdown();
+        if (!job.start(pipeline)) {
+            log.info("Indexing cancelled before start for: {}", entity.getName());
+            siteDataService.updateLastError(entity, STOPPED_BY_USER);
+            job.finish(IndexingJob.State.CANCELLED);
+            return;
+        }
+        log.info("Indexing started for: {}", entity.getName());
+        budget.register(entity.getId(), job.getSite());
 
         try {
-            pool.awaitTermination(10, TimeUnit.MINUTES);
+            pipeline.run();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.warn("Indexing interrupted for {}", entity.getName(), e);
+            job.finish(IndexingJob.State.FAILED);
+            return;
+        } catch (RuntimeException e) {
+            log.error("Indexing failed for {}", entity.getName(), e);
+            siteDataService.updateLastError(entity, e.getMessage());
+            job.finish(IndexingJob.State.FAILED);
             return;
         } finally {
-            RUNNING.set(false);
-            log.info("RUNNING SET FALSE");
+            budget.unregister(entity.getId());
         }
         log.info("Indexing finished for: {}", entity.getName());
 
         Site updated = siteRepository.findByUrl(entity.getUrl()).orElse(entity);
+        if (pipeline.isStopped()) {
+            siteDataService.updateLastError(updated, STOPPED_BY_USER);
+            job.finish(IndexingJob.State.CANCELLED);
+            return;
+        }
         Status finalStatus = updated.getStatus().equals(Status.FAILED) ? Status.FAILED : Status.INDEXED;
         siteDataService.updateStatus(updated, finalStatus);
+        job.finish(finalStatus == Status.INDEXED ? IndexingJob.State.FINISHED : IndexingJob.State.FAILED);
     }
 
     @Transactional
     public void stopFullIndexing() {
-        if (!RUNNING.get()) {
+        if (!isRunning()) {
             throw new IndexingException(NOT_STARTED);
         }
-        pool.shutdownNow();
+        jobs.values().forEach(IndexingJob::cancel);
 
         for (Site site : siteRepository.findAll()) {
             if (site.getStatus() != Status.INDEXED) {
                 site.setStatus(Status.FAILED);
-                site.setLastError("Индексация остановлена пользователем");
+                site.setLastError(STOPPED_BY_USER);
             }
             site.setStatusTime(LocalDateTime.now());
             siteRepository.save(site);
         }
-        RUNNING.set(false);
     }
 
-    @Transactional
+    /**
+     * Отменяет одну задачу: ожидающая в очереди не начнётся, выполняющаяся остановится
+     * и сохранит контрольную точку обхода.
+     */
+    public void cancelJob(long id) {
+        IndexingJob job = jobs.values().stream()
+                .filter(candidate -> candidate.getId() == id)
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException(JOB_NOT_FOUND));
+        if (!job.isActive()) {
+            throw new IndexingException(JOB_FINISHED);
+        }
+        job.cancel();
+    }
+
+    public List<IndexingJobProgress> jobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(IndexingJob::getId))
+                .map(IndexingJob::progress)
+                .toList();
+    }
+
+    public boolean isRunning() {
+        return jobs.values().stream().anyMatch(IndexingJob::isActive);
+    }
+
+    /**
+     * Загружает и лемматизирует страницу, затем одной транзакцией переписывает её
+     * сохранённую версию по разнице лемм (или вставляет новую). Если загрузка не удалась
+     * или сервер ответил ошибкой, прежняя версия страницы остаётся в индексе.
+     */
     public void indexPage(String url) {
 
         Optional<SiteConfig> found = sites.getSites().stream()
@@ -129,8 +213,22 @@ public class IndexingService {
         if (!path.startsWith("/")) {
             path = "/" + path;
         }
-        siteDataService.deleteDataByPage(path, entity);
-        siteDataService.updateStatus(entity, Status.INDEXING);
-        indexing(entity, path, true);
+        IndexingJob job;
+        synchronized (jobs) {
+            IndexingJob current = jobs.get(found.get().getUrl());
+            if (current != null && current.isActive()) {
+                throw new IndexingException(ALREADY_STARTED);
+            }
+            job = new IndexingJob(jobIds.incrementAndGet(), found.get(), false, true);
+            jobs.put(found.get().getUrl(), job);
+        }
+        try {
+            siteDataService.updateStatus(entity, Status.INDEXING);
+            indexing(job, entity, path, true);
+        } finally {
+            if (job.isActive()) {
+                job.finish(IndexingJob.State.FAILED);
+            }
+        }
     }
 }
@@ -0,0 +1,107 @@
+package searchengine.services.lemmatization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик лемм страницы на открытой адресации: ключи в массиве строк,
+ * количества в массиве int, без упаковки значений при каждом инкременте.
+ */
+public final class LemmaCounts {
+
+    private String[] keys = new String[64];
+    private int[] counts = new int[64];
+    private int size;
+    private long total;
+
+    public void increment(String lemma) {
+        add(lemma, 1);
+    }
+
+    public void add(String lemma, int count) {
+        int mask = keys.length - 1;
+        int i = mix(lemma.hashCode()) & mask;
+        while (keys[i] != null) {
+            if (keys[i].equals(lemma)) {
+                counts[i] += count;
+                total += count;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = lemma;
+        counts[i] = count;
+        total += count;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    public int get(String lemma) {
+        int mask = keys.length - 1;
+        int i = mix(lemma.hashCode()) & mask;
+        while (keys[i] != null) {
+            if (keys[i].equals(lemma)) {
+                return counts[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Сумма всех вхождений, т.е. число значимых слов на странице.
+     */
+    public long total() {
+        return total;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    public List<String> lemmas() {
+        List<String> lemmas = new ArrayList<>(size);
+        forEach((lemma, count) -> lemmas.add(lemma));
+        return lemmas;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = mix(oldKeys[j].hashCode()) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
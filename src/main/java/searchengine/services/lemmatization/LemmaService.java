@@ -1,5 +1,7 @@
 package searchengine.services.lemmatization;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,26 +9,35 @@ import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-import searchengine.model.Page;
-import searchengine.model.Site;
-import searchengine.services.siteops.SiteDataService;
+import searchengine.config.SearchEngineProperties;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LemmaService {
 
-    private final SiteDataService service;
+    /**
+     * Значение кэша для служебных частей речи и слов, которые морфология не разбирает.
+     */
+    private static final String STOP_WORD = "";
+
+    private final SearchEngineProperties properties;
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * @param lemma нормальная форма слова {@code text[start, end)} или пустая строка для стоп-слова
+         */
+        void accept(int start, int end, String lemma);
+    }
 
     public LuceneMorphology morphology;
 
+    private Cache<WordKey, String> normalForms;
+
     @PostConstruct
     public void init() {
         try {
@@ -34,52 +45,65 @@ public class LemmaService {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        normalForms = Caffeine.newBuilder()
+                .maximumSize(properties.getMorphologyCacheSize())
+                .build();
     }
 
-    public Map<String, Integer> getLemmas(String text) {
-        log.debug("Calling method getLemmas - LemmaService");
-        Map<String, Integer> lemmas = new HashMap<>();
-        text = cleanTags(text).toLowerCase(Locale.ROOT);
-
-        String regex = "\\p{IsCyrillic}+";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(text);
+    public Map<String, Integer> getLemmas(String html) {
+        return countLemmas(cleanTags(html)).toMap();
+    }
 
-        try {
-            log.debug("Before morphology");
-            while (matcher.find()) {
-
-                String word = matcher.group();
-                if (filter(word)) continue;
-
-                List<String> wordBaseForms =
-                        morphology.getNormalForms(word);
-                String base = wordBaseForms.get(0);
-
-                if (lemmas.containsKey(base)) {
-                    log.debug("Found lemma {} in database", base);
-                    lemmas.put(base, lemmas.get(base) + 1);
-                    continue;
-                }
-                log.debug("Found lemma {} in text", base);
-                lemmas.put(base, 1);
+    /**
+     * Один проход по тексту: кириллические слова приводятся к нижнему регистру
+     * в переиспользуемом буфере, нормальная форма берётся из общего кэша,
+     * и только при промахе вызывается морфология.
+     */
+    public LemmaCounts countLemmas(CharSequence text) {
+        LemmaCounts lemmas = new LemmaCounts();
+        WordKey word = new WordKey();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!isCyrillic(c)) {
+                i++;
+                continue;
+            }
+            word.clear();
+            while (i < length && isCyrillic(c = text.charAt(i))) {
+                word.append(Character.toLowerCase(c));
+                i++;
+            }
+            String lemma = normalForm(word);
+            if (!lemma.isEmpty()) {
+                lemmas.increment(lemma);
             }
-            log.debug("After morphology");
-        }catch (Exception e){
-           log.warn("Error while getting lemmas", e);
         }
-        log.debug("End of method getLemmas - LemmaService");
         return lemmas;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void saveLemmas(Site site, Page page, String html) {
-        log.debug("Calling method saveLemmas - LemmaService by {}", site.getName());
-        Map<String, Integer> lemmaCounts = getLemmas(html);
-        for (Map.Entry<String, Integer> entry : lemmaCounts.entrySet()) {
-            String lemma = entry.getKey();
-            Integer count = entry.getValue();
-            service.saveLemma(site, page, lemma, count);
+    /**
+     * Тот же проход, что и в {@link #countLemmas}, но с позициями слов в тексте.
+     * Останавливается на первом слове, начинающемся после {@code maxChars}.
+     */
+    public void forEachToken(CharSequence text, int maxChars, TokenConsumer consumer) {
+        WordKey word = new WordKey();
+        int length = Math.min(text.length(), maxChars);
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!isCyrillic(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            word.clear();
+            while (i < text.length() && isCyrillic(c = text.charAt(i))) {
+                word.append(Character.toLowerCase(c));
+                i++;
+            }
+            consumer.accept(start, i, normalForm(word));
         }
     }
 
@@ -96,4 +120,34 @@ public class LemmaService {
     public String cleanTags(String text) {
         return Jsoup.parse(text).text();
     }
+
+    private String normalForm(WordKey word) {
+        String cached = normalForms.getIfPresent(word);
+        if (cached != null) {
+            return cached;
+        }
+        return normalForms.get(word.copy(), key -> lemmatize(key.toString()));
+    }
+
+    private String lemmatize(String word) {
+        try {
+            if (filter(word)) {
+                return STOP_WORD;
+            }
+            return morphology.getNormalForms(word).get(0);
+        } catch (RuntimeException e) {
+            log.debug("Cannot lemmatize word {}: {}", word, e.getMessage());
+            return STOP_WORD;
+        }
+    }
+
+    private static boolean isCyrillic(char c) {
+        if (c < '\u0400') {
+            return false;
+        }
+        if (c <= '\u04FF') {
+            return true;
+        }
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.CYRILLIC;
+    }
 }
@@ -0,0 +1,60 @@
+package searchengine.services.lemmatization;
+
+import java.util.Arrays;
+
+/**
+ * Слово как ключ кэша морфологии. Один изменяемый экземпляр переиспользуется
+ * токенизатором для поиска в кэше, копия создаётся только при промахе.
+ * Хэш совпадает со {@link String#hashCode()} того же слова.
+ */
+final class WordKey {
+
+    private char[] chars;
+    private int length;
+    private int hash;
+
+    WordKey() {
+        this(new char[32]);
+    }
+
+    private WordKey(char[] chars) {
+        this.chars = chars;
+    }
+
+    void clear() {
+        length = 0;
+        hash = 0;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        chars[length++] = c;
+        hash = 31 * hash + c;
+    }
+
+    WordKey copy() {
+        WordKey key = new WordKey(Arrays.copyOf(chars, length));
+        key.length = length;
+        key.hash = hash;
+        return key;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WordKey other)) return false;
+        return hash == other.hash && Arrays.equals(chars, 0, length, other.chars, 0, other.length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
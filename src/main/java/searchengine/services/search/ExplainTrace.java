@@ -0,0 +1,60 @@
+package searchengine.services.search;
+
+import searchengine.dto.searching.ExplainIntersection;
+import searchengine.dto.searching.ExplainLemma;
+import searchengine.dto.searching.SearchExplain;
+import searchengine.dto.searching.SearchingResponse;
+import searchengine.model.Lemma;
+import searchengine.services.search.index.PostingMatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Трассировка, записывающая всё в {@link SearchExplain}. Вызывается из одного потока.
+ */
+class ExplainTrace implements SearchTrace {
+
+    private final SearchExplain explain = new SearchExplain();
+
+    ExplainTrace(String query, String site) {
+        explain.setQuery(query);
+        explain.setSite(site);
+    }
+
+    @Override
+    public void stage(String name, long nanos) {
+        explain.getStageNanos().merge(name, nanos, Long::sum);
+    }
+
+    @Override
+    public void lemma(Lemma lemma, double threshold, boolean dropped) {
+        ExplainLemma item = new ExplainLemma(lemma.getSite().getUrl(), lemma.getLemma(),
+                lemma.getFrequency(), threshold);
+        (dropped ? explain.getDroppedLemmas() : explain.getLemmas()).add(item);
+    }
+
+    @Override
+    public void intersection(List<Lemma> lemmas, PostingMatch match) {
+        String site = lemmas.get(0).getSite().getUrl();
+        if (match.order().length == 0) {
+            explain.getIntersections().add(new ExplainIntersection(site,
+                    lemmas.stream().map(Lemma::getLemma).toList(), null, match.size()));
+            return;
+        }
+        List<String> order = new ArrayList<>(lemmas.size());
+        List<Integer> postingSizes = new ArrayList<>(lemmas.size());
+        for (int i : match.order()) {
+            order.add(lemmas.get(i).getLemma());
+            postingSizes.add(match.postingSizes()[i]);
+        }
+        explain.getIntersections().add(new ExplainIntersection(site, order, postingSizes, match.size()));
+    }
+
+    SearchExplain finish(SearchingResponse response) {
+        explain.setCount(response.getCount());
+        explain.setResults(response.getData().size());
+        explain.setData(response.getData());
+        return explain;
+    }
+}
@@ -0,0 +1,63 @@
+package searchengine.services.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+import searchengine.services.search.index.IndexGenerations;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+/**
+ * Кэш ранжированных идентификаторов страниц по набору лемм запроса и сайту.
+ * Запись действительна, пока не сменилось поколение индекса сайта,
+ * и покрывает запросы со смещением в пределах посчитанного префикса.
+ */
+@Component
+public class QueryCache {
+
+    /** Ранжирование с запасом, чтобы листание результатов не пересчитывало запрос */
+    private static final int MIN_RESULTS = 200;
+
+    private final Cache<Key, Entry> cache;
+    private final IndexGenerations generations;
+
+    private record Key(String lemmas, String site) {
+    }
+
+    private record Entry(RankedPages ranked, long generation) {
+
+        boolean covers(int needed) {
+            return ranked.size() >= needed || ranked.size() == ranked.total();
+        }
+    }
+
+    public QueryCache(SearchEngineProperties properties, IndexGenerations generations, MeterRegistry meterRegistry) {
+        this.generations = generations;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getQueryCacheSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.query");
+    }
+
+    /**
+     * @param needed сколько лучших страниц нужно вызывающему ({@code offset + limit})
+     * @param ranker ранжирование с заданным числом лучших страниц, вызывается при промахе
+     */
+    public RankedPages get(Collection<String> lemmas, String site, int needed, IntFunction<RankedPages> ranker) {
+        Key key = new Key(String.join(" ", new TreeSet<>(lemmas)), site);
+        Entry entry = cache.getIfPresent(key);
+        long generation = generations.current(site);
+        if (entry != null && entry.generation() == generation && entry.covers(needed)) {
+            return entry.ranked();
+        }
+        RankedPages ranked = ranker.apply(Math.max(needed, MIN_RESULTS));
+        cache.put(key, new Entry(ranked, generation));
+        return ranked;
+    }
+}
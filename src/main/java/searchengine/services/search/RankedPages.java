@@ -0,0 +1,11 @@
+package searchengine.services.search;
+
+/**
+ * Лучшие страницы запроса по убыванию релевантности и общее число найденных страниц.
+ */
+public record RankedPages(int[] pageIds, double[] scores, long total) {
+
+    public int size() {
+        return pageIds.length;
+    }
+}
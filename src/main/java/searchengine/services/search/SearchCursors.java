@@ -0,0 +1,83 @@
+package searchengine.services.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+import searchengine.exception.EntityNotFoundException;
+import searchengine.exception.IndexingException;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Курсоры поиска: замороженный ранжированный список страниц запроса, который живёт
+ * на сервере {@code cursor.ttl} с последнего обращения. Токен курсора - идентификатор
+ * списка и смещение следующей страницы, поэтому любая страница отдаётся за O(limit)
+ * без повторного ранжирования и не зависит от последующих изменений индекса.
+ */
+@Component
+public class SearchCursors {
+
+    private static final String CURSOR_EXPIRED = "Курсор поиска не найден или устарел, повторите запрос";
+    private static final String CURSOR_INVALID = "Некорректный курсор поиска";
+
+    private final Cache<String, FrozenResults> cache;
+    private final SecureRandom random = new SecureRandom();
+
+    public record FrozenResults(String id, List<String> lemmas, RankedPages ranked) {
+    }
+
+    public record Position(FrozenResults results, int offset) {
+    }
+
+    public SearchCursors(SearchEngineProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCursor().getMaxCursors())
+                .expireAfterAccess(properties.getCursor().getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.cursor");
+    }
+
+    /**
+     * Новый список результатов; на сервере он сохраняется только при выдаче первого токена.
+     */
+    public FrozenResults freeze(List<String> lemmas, RankedPages ranked) {
+        byte[] id = new byte[12];
+        random.nextBytes(id);
+        return new FrozenResults(Base64.getUrlEncoder().withoutPadding().encodeToString(id), lemmas, ranked);
+    }
+
+    /**
+     * @return токен страницы, начинающейся с {@code offset}, или null, если список исчерпан
+     */
+    public String token(FrozenResults results, int offset) {
+        if (offset >= results.ranked().size()) {
+            return null;
+        }
+        cache.put(results.id(), results);
+        return results.id() + "." + Integer.toString(offset, 36);
+    }
+
+    public Position resolve(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new IndexingException(CURSOR_INVALID);
+        }
+        int offset;
+        try {
+            offset = Integer.parseInt(token.substring(dot + 1), 36);
+        } catch (NumberFormatException e) {
+            throw new IndexingException(CURSOR_INVALID);
+        }
+        FrozenResults results = cache.getIfPresent(token.substring(0, dot));
+        if (results == null) {
+            throw new EntityNotFoundException(CURSOR_EXPIRED);
+        }
+        return new Position(results, Math.max(offset, 0));
+    }
+}
@@ -1,28 +1,36 @@
 package searchengine.services.search;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.SearchEngineProperties;
 import searchengine.dto.searching.RelevanceItem;
+import searchengine.dto.searching.SearchExplain;
 import searchengine.dto.searching.SearchingResponse;
 import searchengine.dto.searching.SearchingData;
 import searchengine.exception.IndexingException;
-import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
-import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.services.lemmatization.LemmaService;
+import searchengine.services.search.index.InvertedIndex;
+import searchengine.services.search.index.PostingMatch;
+import searchengine.services.search.ranking.Corpus;
+import searchengine.services.search.ranking.RankingEngine;
+import searchengine.services.statistics.IndexStatistics;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,179 +40,295 @@ public class SearchService {
 
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final LemmaService lemmaService;
+    private final InvertedIndex invertedIndex;
+    private final QueryCache queryCache;
+    private final SnippetBuilder snippetBuilder;
+    private final RankingEngine rankingEngine;
+    private final SearchCursors cursors;
+    private final IndexStatistics statistics;
+    private final SearchEngineProperties properties;
+    private final MeterRegistry meterRegistry;
 
     private static final String EMPTY_QUERY = "Задан пустой поисковый запрос";
 
+    /** Страница замороженного списка результатов; {@code paged} - клиент листает курсором */
+    private record ResultPage(SearchCursors.FrozenResults results, int offset, int limit, boolean paged) {
+
+        int end() {
+            return Math.min(results.ranked().size(), offset + limit);
+        }
+
+        /**
+         * Число результатов: при листании курсором - только те, до которых он дойдёт,
+         * то есть не больше замороженного списка ({@code cursor.max-results}).
+         */
+        long count() {
+            return paged ? results.ranked().size() : results.ranked().total();
+        }
+    }
+
+    /** Леммы запроса одного сайта и пересечение их постингов в том же порядке */
+    private record SiteMatch(List<Lemma> lemmas, PostingMatch match) {
+    }
+
+    @Transactional(readOnly = true)
+    public SearchingResponse search(String query, String site, int offset, int limit, boolean withCursor) {
+        return response(firstPage(query, site, offset, limit, withCursor, SearchTrace.NOOP), SearchTrace.NOOP);
+    }
+
+    /**
+     * Следующая страница по токену курсора из предыдущего ответа: берётся из замороженного
+     * списка без повторного ранжирования.
+     */
+    @Transactional(readOnly = true)
+    public SearchingResponse next(String cursor, int limit) {
+        return response(resultPage(cursor, limit), SearchTrace.NOOP);
+    }
+
+    /**
+     * Результаты для потоковой выдачи: ранжирование и загрузка страниц выполняются сразу,
+     * сниппеты строятся уже при записи ответа в {@link #forEachResult}.
+     */
+    @Transactional(readOnly = true)
+    public SearchStream stream(String query, String site, String cursor, boolean withCursor, int offset, int limit) {
+        ResultPage page = cursor.isEmpty()
+                ? firstPage(query, site, offset, limit, withCursor, SearchTrace.NOOP)
+                : resultPage(cursor, limit);
+        return new SearchStream(page.count(), nextCursor(page),
+                page.results().lemmas(), relevanceItems(page));
+    }
+
+    /**
+     * Строит сниппеты параллельно на виртуальных потоках и отдаёт результаты в порядке
+     * релевантности по мере готовности, не дожидаясь остальных.
+     */
+    public void forEachResult(SearchStream stream, Consumer<SearchingData> consumer) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SearchingData>> futures = stream.items().stream()
+                    .map(item -> executor.submit(() -> createData(item, stream.lemmas())))
+                    .toList();
+            for (Future<SearchingData> future : futures) {
+                consumer.accept(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Тот же поиск мимо кэша запросов, с леммами, отброшенными леммами, порядком
+     * пересечения, числом кандидатов и временем каждой стадии в наносекундах.
+     */
     @Transactional(readOnly = true)
-    public SearchingResponse search(String query, String site, int offset, int limit) {
+    public SearchExplain explain(String query, String site, int offset, int limit) {
+        ExplainTrace trace = new ExplainTrace(query, site);
+        return trace.finish(response(firstPage(query, site, offset, limit, false, trace), trace));
+    }
+
+    /**
+     * Ранжирует запрос до {@code offset + limit} лучших страниц, а если клиент просит курсор -
+     * с запасом до {@code cursor.max-results}, чтобы дальнейшие страницы можно было листать им.
+     */
+    private ResultPage firstPage(String query, String site, int offset, int limit, boolean withCursor,
+                                 SearchTrace trace) {
         if (query.isEmpty()) {
             throw new IndexingException(EMPTY_QUERY);
         }
+        log.debug("Search query: {}, site: {}", query, site);
+        List<String> lemmas = timed("lemmatize", trace, () -> List.copyOf(lemmaService.getLemmas(query).keySet()));
+        log.debug("After getting lemmas: {}", lemmas);
 
-        List<SearchingData> data = search(query, site);
-
-        Pageable pageable = PageRequest.of(offset / limit, limit);
+        int needed = withCursor ? Math.max(offset + limit, properties.getCursor().getMaxResults()) : offset + limit;
+        IntFunction<RankedPages> ranker =
+                k -> rankPages(timed("lookup", trace, () -> findLemmas(lemmas, site, trace)), site, k, trace);
+        RankedPages ranked = trace == SearchTrace.NOOP
+                ? queryCache.get(lemmas, site, needed, ranker)
+                : ranker.apply(needed);
+        return new ResultPage(cursors.freeze(lemmas, ranked), offset, limit, withCursor);
+    }
 
-        org.springframework.data.domain.Page<SearchingData> page = paginateResults(data, pageable);
+    private ResultPage resultPage(String cursor, int limit) {
+        SearchCursors.Position position = cursors.resolve(cursor);
+        return new ResultPage(position.results(), position.offset(), limit, true);
+    }
 
+    private SearchingResponse response(ResultPage page, SearchTrace trace) {
         SearchingResponse result = new SearchingResponse();
         result.setResult("true");
-        result.setCount(page.getTotalElements());
-        result.setData(page.getContent());
-
+        result.setCount(page.count());
+        result.setData(timed("snippet", trace, () -> relevanceItems(page).stream()
+                .map(item -> createData(item, page.results().lemmas()))
+                .toList()));
+        result.setCursor(nextCursor(page));
         return result;
     }
 
-    public List<SearchingData> search(String query, String site) {
-        log.debug("Search query: {}", query);
-        List<SearchingData> data = new ArrayList<>();
-        log.debug("Search site: {}", site);
-        List<String> lemmas = List.copyOf(lemmaService.getLemmas(query).keySet());
-        log.debug("After getting lemmas: {}", lemmas);
+    /**
+     * Список попадает в хранилище курсоров, только если клиент листает курсором и за
+     * текущей страницей есть ещё результаты.
+     */
+    private String nextCursor(ResultPage page) {
+        if (!page.paged()) return null;
+        return cursors.token(page.results(), page.end());
+    }
+
+    /**
+     * Леммы запроса, встречающиеся не более чем на 70% страниц своего сайта.
+     */
+    private List<Lemma> findLemmas(List<String> lemmas, String site, SearchTrace trace) {
         boolean allSites = site.isEmpty();
-        long totalPages = pageRepository.count();
-        double threshold = totalPages * 0.7;
 
-        log.debug("Sorting lemmas");
-        List<Lemma> sortedLemmas = lemmas.stream()
+        return lemmas.stream()
                 .flatMap(lemmaStr -> lemmaRepository.findAllByLemma(lemmaStr).stream())
                 .filter(l -> allSites || l.getSite().getUrl().equals(site))
-                .filter(l -> l.getFrequency() < threshold)
+                .filter(l -> {
+                    double threshold = statistics.pages(l.getSite().getId()) * 0.7;
+                    boolean kept = l.getFrequency() < threshold;
+                    trace.lemma(l, threshold, !kept);
+                    return kept;
+                })
                 .sorted(Comparator.comparingInt(Lemma::getFrequency))
                 .toList();
-        log.debug("After sorting lemmas");
+    }
+
+    /**
+     * Считает релевантность всех найденных страниц за один проход по постинг-листам лемм
+     * запроса и оставляет в куче только {@code limit} лучших. Сами страницы при этом не загружаются.
+     */
+    public RankedPages rankPages(List<Lemma> sortedLemmas, String site, int limit) {
+        return rankPages(sortedLemmas, site, limit, SearchTrace.NOOP);
+    }
 
-        log.debug("Filtering pages");
-        List<Page> pages = filterPagesByLemmas(sortedLemmas, site);
-        if (pages.isEmpty()) return Collections.emptyList();
+    private RankedPages rankPages(List<Lemma> sortedLemmas, String site, int limit, SearchTrace trace) {
+        List<SiteMatch> matches = timed("intersect", trace, () -> filterPagesByLemmas(sortedLemmas, site, trace));
+        return timed("score", trace, () -> {
+            TopK top = new TopK(limit);
+            Corpus corpus = corpus(sortedLemmas, site);
+            for (SiteMatch match : matches) {
+                rankingEngine.score(match.lemmas(), match.match(), corpus, top::offer);
+            }
+            return top.toRankedPages();
+        });
+    }
 
-        log.debug("Calculating relevance");
-        List<RelevanceItem> relevanceItems = calculateRelevance(pages);
+    /**
+     * Статистика области поиска: все сайты или один. Документная частота леммы - сумма
+     * её частот по сайтам, где она прошла фильтр частых лемм.
+     */
+    private Corpus corpus(List<Lemma> sortedLemmas, String site) {
+        Map<String, Long> frequencies = sortedLemmas.stream()
+                .filter(l -> site.isEmpty() || l.getSite().getUrl().equals(site))
+                .collect(Collectors.groupingBy(Lemma::getLemma, Collectors.summingLong(Lemma::getFrequency)));
+        if (site.isEmpty() || sortedLemmas.isEmpty()) {
+            return new Corpus(statistics.totalPages(), statistics.totalLength(), frequencies);
+        }
+        int siteId = sortedLemmas.get(0).getSite().getId();
+        return new Corpus(statistics.pages(siteId), statistics.length(siteId), frequencies);
+    }
 
-        for (RelevanceItem relevanceItem : relevanceItems) {
-            SearchingData sd = createData(relevanceItem, lemmas);
-            if (sd != null) data.add(sd);
+    private <T> T timed(String stage, SearchTrace trace, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            meterRegistry.timer("search.stage", "stage", stage).record(elapsed, TimeUnit.NANOSECONDS);
+            trace.stage(stage, elapsed);
         }
+    }
 
-        return data;
+    /**
+     * Страницы {@code [offset, offset + limit)} списка с относительной релевантностью.
+     * Удалённые после ранжирования страницы пропускаются.
+     */
+    private List<RelevanceItem> relevanceItems(ResultPage resultPage) {
+        RankedPages ranked = resultPage.results().ranked();
+        int offset = resultPage.offset();
+        if (offset >= resultPage.end()) return Collections.emptyList();
+
+        double max = ranked.scores()[0];
+        int[] pageIds = Arrays.copyOfRange(ranked.pageIds(), offset, resultPage.end());
+        Map<Integer, Page> pages = pageRepository.findAllById(Arrays.stream(pageIds).boxed().toList())
+                .stream()
+                .collect(Collectors.toMap(Page::getId, p -> p));
+
+        List<RelevanceItem> items = new ArrayList<>(pageIds.length);
+        for (int i = 0; i < pageIds.length; i++) {
+            Page page = pages.get(pageIds[i]);
+            if (page == null) continue;
+            items.add(new RelevanceItem(page, ranked.scores()[offset + i] / max));
+        }
+        return items;
     }
 
     public SearchingData createData(RelevanceItem item, List<String> lemmas) {
-        log.info("Creating data for lemmas: {}", lemmas);
+        log.debug("Creating data for lemmas: {}", lemmas);
         SearchingData data = new SearchingData();
         Page page = item.getPage();
-        String html = page.getContent();
-        Document doc = Jsoup.parse(html);
         String snippet = getSnippet(page, lemmas);
 
         data.setSite(page.getSite().getUrl());
         data.setSiteName(page.getSite().getName());
-        data.setTitle(doc.title());
+        data.setTitle(page.getTitle());
         data.setRelevance(item.getRelevance());
         data.setUri(page.getPath());
         data.setSnippet(snippet);
 
-        return snippet.isBlank() ? null : data;
+        return data;
     }
 
     public String getSnippet(Page page, List<String> lemmas) {
-        String text = Jsoup.parse(page.getContent()).body().text();
-        String lemma = lemmas.get(0).toLowerCase();
-        String[] words = text.split("\\s+");
-
-        int lemmaIndex = -1;
-        for (int i = 0; i < words.length; i++) {
-            if (words[i].toLowerCase().contains(lemma)) {
-                lemmaIndex = i;
-                break;
-            }
-        }
-        if (lemmaIndex == -1) {
-            return "";
-        }
-
-        int start = Math.max(0, lemmaIndex - 10);
-        int end = Math.min(words.length, lemmaIndex + 11);
-
-        StringBuilder snippet = new StringBuilder();
-
-        if (start > 0) snippet.append("... ");
-
-        for (int i = start; i < end; i++) {
-            String word = words[i];
-            boolean isLemma = lemmas.stream()
-                    .anyMatch(l -> word.toLowerCase().startsWith(l.toLowerCase()));
-
-            if (isLemma) {
-                snippet.append("<b>").append(word).append("</b>");
-            } else {
-                snippet.append(word);
-            }
-
-            if (i < end - 1) snippet.append(" ");
-        }
-
-        if (end < words.length) snippet.append(" ...");
-
-        return snippet.toString();
+        return snippetBuilder.build(page.getText(), lemmas);
     }
 
-    public List<RelevanceItem> calculateRelevance(List<Page> pages) {
-        log.info("Calculating relevance");
-        List<RelevanceItem> items = pages.stream().map(page -> {
-            double sum = indexRepository.findAllByPageId(page.getId())
-                    .stream()
-                    .mapToDouble(Index::getRank).sum();
-
-            return new RelevanceItem(page, sum);
-        }).sorted(Comparator.comparing(RelevanceItem::getRelevance).reversed()).toList();
-
-        double max = items.get(0).getRelevance();
-
-        return items.stream()
-                .map(item -> new RelevanceItem(item.getPage(), item.getRelevance() / max))
-                .sorted(Comparator.comparing(RelevanceItem::getRelevance).reversed()).toList();
-    }
-    
-    public List<Page> filterPagesByLemmas(List<Lemma> sortedLemmas, String site) {
+    private List<SiteMatch> filterPagesByLemmas(List<Lemma> sortedLemmas, String site, SearchTrace trace) {
         boolean allSites = site.isEmpty();
         if (sortedLemmas.isEmpty()) return Collections.emptyList();
 
-        Map<String, List<Lemma>> grouped = sortedLemmas.stream()
-                .collect(Collectors.groupingBy(Lemma::getLemma));
-
-        Set<Integer> commonPageIds = null;
+        long lemmaCount = sortedLemmas.stream().map(Lemma::getLemma).distinct().count();
+        Map<Integer, Map<String, Lemma>> bySite = sortedLemmas.stream()
+                .filter(l -> allSites || l.getSite().getUrl().equals(site))
+                .collect(Collectors.groupingBy(l -> l.getSite().getId(), LinkedHashMap::new,
+                        Collectors.toMap(Lemma::getLemma, l -> l,
+                                (a, b) -> a.getFrequency() >= b.getFrequency() ? a : b, LinkedHashMap::new)));
 
-        for (List<Lemma> lemmaGroup : grouped.values()) {
-            Set<Integer> pageIdsForLemma = lemmaGroup.stream()
-                    .flatMap(l -> indexRepository.findAllByLemmaId(l.getId()).stream())
-                    .map(Index::getPage)
-                    .filter(p -> allSites || p.getSite().getUrl().equals(site))
-                    .map(Page::getId)
-                    .collect(Collectors.toSet());
+        List<List<Lemma>> perSite = bySite.values().stream()
+                .filter(siteLemmas -> siteLemmas.size() >= lemmaCount)
+                .map(siteLemmas -> List.copyOf(siteLemmas.values()))
+                .toList();
+        if (perSite.size() == 1) {
+            PostingMatch match = invertedIndex.intersect(lemmaIds(perSite.get(0)));
+            trace.intersection(perSite.get(0), match);
+            return match.size() > 0 ? List.of(new SiteMatch(perSite.get(0), match)) : Collections.emptyList();
+        }
 
-            if (commonPageIds == null) {
-                commonPageIds = pageIdsForLemma;
-            } else {
-                commonPageIds.retainAll(pageIdsForLemma);
+        // сайты независимы, их постинги читаются параллельно
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<PostingMatch>> futures = perSite.stream()
+                    .map(siteLemmas -> executor.submit(() -> invertedIndex.intersect(lemmaIds(siteLemmas))))
+                    .toList();
+            List<SiteMatch> matches = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                PostingMatch match = futures.get(i).get();
+                trace.intersection(perSite.get(i), match);
+                if (match.size() > 0) {
+                    matches.add(new SiteMatch(perSite.get(i), match));
+                }
             }
-
-            if (commonPageIds.isEmpty()) return Collections.emptyList();
+            return matches;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
         }
-
-        return pageRepository.findAllById(commonPageIds);
     }
 
-    private org.springframework.data.domain.Page<SearchingData> paginateResults(List<SearchingData> allResults, Pageable pageable) {
-        int start = pageable.getPageNumber() * pageable.getPageSize();
-        if (start >= allResults.size()) return org.springframework.data.domain.Page.empty(pageable);
-
-        int end = Math.min(start + pageable.getPageSize(), allResults.size());
-
-        List<SearchingData> paginatedResults = allResults.subList(start, end);
-
-        return new PageImpl<>(paginatedResults, pageable, allResults.size());
+    private static int[] lemmaIds(List<Lemma> lemmas) {
+        return lemmas.stream().mapToInt(Lemma::getId).toArray();
     }
 }
@@ -0,0 +1,13 @@
+package searchengine.services.search;
+
+import searchengine.dto.searching.RelevanceItem;
+
+import java.util.List;
+
+/**
+ * Страница результатов для потоковой выдачи: загруженные страницы без сниппетов.
+ *
+ * @param cursor токен следующей страницы или null
+ */
+public record SearchStream(long count, String cursor, List<String> lemmas, List<RelevanceItem> items) {
+}
@@ -0,0 +1,29 @@
+package searchengine.services.search;
+
+import searchengine.model.Lemma;
+import searchengine.services.search.index.PostingMatch;
+
+import java.util.List;
+
+/**
+ * Сбор подробностей выполнения поискового запроса для {@code /api/search/explain}.
+ * Обычный поиск получает {@link #NOOP}: пустые методы JIT встраивает и убирает,
+ * а время стадий всё равно замеряется для метрик.
+ */
+public interface SearchTrace {
+
+    SearchTrace NOOP = new SearchTrace() {
+    };
+
+    default void stage(String name, long nanos) {
+    }
+
+    default void lemma(Lemma lemma, double threshold, boolean dropped) {
+    }
+
+    /**
+     * @param lemmas леммы сайта в порядке столбцов {@code match}
+     */
+    default void intersection(List<Lemma> lemmas, PostingMatch match) {
+    }
+}
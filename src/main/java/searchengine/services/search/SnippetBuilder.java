@@ -0,0 +1,168 @@
+package searchengine.services.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+import searchengine.services.lemmatization.LemmaService;
+
+import java.util.*;
+
+/**
+ * Сниппет из нескольких фрагментов текста страницы. Текст проходится один раз
+ * лемматизатором (с общим кэшем нормальных форм), слова с леммами запроса
+ * отмечаются, затем скользящим окном в {@code fragmentWords} слов выбираются
+ * непересекающиеся окна с наибольшим числом разных лемм запроса.
+ * Просматриваются только первые {@code maxChars} символов текста.
+ */
+@Component
+public class SnippetBuilder {
+
+    private static final String ELLIPSIS = "...";
+
+    private final LemmaService lemmaService;
+    private final SearchEngineProperties.Snippet config;
+
+    public SnippetBuilder(LemmaService lemmaService, SearchEngineProperties properties) {
+        this.lemmaService = lemmaService;
+        this.config = properties.getSnippet();
+    }
+
+    public String build(String text, List<String> lemmas) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        Map<String, Integer> query = new HashMap<>();
+        for (String lemma : lemmas) {
+            query.putIfAbsent(lemma, query.size());
+        }
+        Tokens tokens = new Tokens();
+        lemmaService.forEachToken(text, config.getMaxChars(),
+                (start, end, lemma) -> tokens.add(start, end, query.getOrDefault(lemma, -1)));
+        if (tokens.size == 0) {
+            return "";
+        }
+
+        int window = Math.max(1, config.getFragmentWords());
+        List<int[]> fragments = selectFragments(tokens, query.size(), window);
+        if (fragments.isEmpty()) {
+            fragments = List.of(new int[]{0, Math.min(window, tokens.size)});
+        }
+
+        StringBuilder snippet = new StringBuilder();
+        for (int i = 0; i < fragments.size(); i++) {
+            int[] fragment = fragments.get(i);
+            if (i > 0) snippet.append(' ');
+            if (fragment[0] > 0 && (i == 0 || fragment[0] > fragments.get(i - 1)[1])) {
+                snippet.append(ELLIPSIS).append(' ');
+            }
+            appendFragment(snippet, text, tokens, fragment[0], fragment[1]);
+        }
+        if (fragments.get(fragments.size() - 1)[1] < tokens.size || text.length() > config.getMaxChars()) {
+            snippet.append(' ').append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * @return границы выбранных окон {@code [первое слово, последнее слово + 1)} в порядке следования в тексте
+     */
+    private List<int[]> selectFragments(Tokens tokens, int lemmaCount, int window) {
+        int[] hits = tokens.hits();
+        int m = hits.length;
+        if (m == 0) {
+            return List.of();
+        }
+        // оценка окна, начинающегося с каждого совпадения: сначала число разных лемм, потом всех совпадений
+        long[] scores = new long[m];
+        int[] lastHit = new int[m];
+        int[] counts = new int[lemmaCount];
+        int distinct = 0;
+        int b = 0;
+        for (int a = 0; a < m; a++) {
+            int limit = hits[a] + window;
+            while (b < m && hits[b] < limit) {
+                if (counts[tokens.match[hits[b]]]++ == 0) distinct++;
+                b++;
+            }
+            scores[a] = (long) distinct * (window + 1) + (b - a);
+            lastHit[a] = hits[b - 1];
+            if (--counts[tokens.match[hits[a]]] == 0) distinct--;
+        }
+
+        List<int[]> chosen = new ArrayList<>();
+        boolean[] used = new boolean[m];
+        while (chosen.size() < config.getFragments()) {
+            int best = -1;
+            for (int a = 0; a < m; a++) {
+                if (!used[a] && (best < 0 || scores[a] > scores[best])) best = a;
+            }
+            if (best < 0) break;
+            used[best] = true;
+
+            int slack = window - (lastHit[best] - hits[best] + 1);
+            int end = Math.min(tokens.size, Math.max(0, hits[best] - slack / 2) + window);
+            int start = Math.max(0, end - window);
+            if (chosen.stream().noneMatch(f -> start < f[1] && f[0] < end)) {
+                chosen.add(new int[]{start, end});
+            }
+        }
+        chosen.sort(Comparator.comparingInt(f -> f[0]));
+        return chosen;
+    }
+
+    private static void appendFragment(StringBuilder out, String text, Tokens tokens, int from, int to) {
+        int position = tokens.starts[from];
+        for (int t = from; t < to; t++) {
+            escape(out, text, position, tokens.starts[t]);
+            boolean hit = tokens.match[t] >= 0;
+            if (hit) out.append("<b>");
+            escape(out, text, tokens.starts[t], tokens.ends[t]);
+            if (hit) out.append("</b>");
+            position = tokens.ends[t];
+        }
+    }
+
+    private static void escape(StringBuilder out, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Позиции слов текста и номер леммы запроса для каждого слова ({@code -1} - не из запроса).
+     */
+    private static final class Tokens {
+
+        int[] starts = new int[256];
+        int[] ends = new int[256];
+        int[] match = new int[256];
+        int size;
+        int hitCount;
+
+        void add(int start, int end, int lemma) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size << 1);
+                ends = Arrays.copyOf(ends, size << 1);
+                match = Arrays.copyOf(match, size << 1);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            match[size] = lemma;
+            size++;
+            if (lemma >= 0) hitCount++;
+        }
+
+        int[] hits() {
+            int[] hits = new int[hitCount];
+            for (int t = 0, h = 0; t < size; t++) {
+                if (match[t] >= 0) hits[h++] = t;
+            }
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.services.search;
+
+/**
+ * Ограниченная min-куча: хранит не больше {@code capacity} лучших страниц,
+ * в корне - худшая из них. При равной релевантности выше страница с меньшим id.
+ */
+final class TopK {
+
+    private final int capacity;
+    private final int[] pageIds;
+    private final double[] scores;
+    private int size;
+    private long total;
+
+    TopK(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.pageIds = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    void offer(int pageId, double score) {
+        total++;
+        if (size < capacity) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && isBetter(pageId, score, pageIds[0], scores[0])) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Извлекает страницы по убыванию релевантности, после вызова куча пуста.
+     */
+    RankedPages toRankedPages() {
+        int n = size;
+        int[] sortedIds = new int[n];
+        double[] sortedScores = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            sortedIds[i] = pageIds[0];
+            sortedScores[i] = scores[0];
+            size--;
+            pageIds[0] = pageIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new RankedPages(sortedIds, sortedScores, total);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isBetter(pageIds[parent], scores[parent], pageIds[i], scores[i])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isBetter(pageIds[left], scores[left], pageIds[right], scores[right])) {
+                worst = right;
+            }
+            if (!isBetter(pageIds[i], scores[i], pageIds[worst], scores[worst])) {
+                break;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = pageIds[i];
+        pageIds[i] = pageIds[j];
+        pageIds[j] = id;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static boolean isBetter(int pageId, double score, int otherId, double otherScore) {
+        return score > otherScore || (score == otherScore && pageId < otherId);
+    }
+}
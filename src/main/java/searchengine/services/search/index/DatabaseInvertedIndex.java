@@ -0,0 +1,102 @@
+package searchengine.services.search.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Постинг-листы читаются из таблицы index при каждом запросе.
+ * Используется, если индекс в памяти отключён или ещё не загружен.
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseInvertedIndex implements InvertedIndex {
+
+    /**
+     * Пересечение делает сама БД: подзапрос оставляет страницы, где есть все леммы,
+     * внешний запрос возвращает их ранги. Читаются только идентификаторы и ранги,
+     * по индексу (lemma_id, page_id) INCLUDE (rank). Леммы принадлежат одному сайту,
+     * поэтому отдельный фильтр по site_id не нужен.
+     */
+    private static final String SELECT_MATCHES = """
+            SELECT i.page_id, i.lemma_id, i."rank" FROM "index" i
+            JOIN (SELECT page_id FROM "index" WHERE lemma_id = ANY (?)
+                  GROUP BY page_id HAVING COUNT(*) = ?) m ON m.page_id = i.page_id
+            WHERE i.lemma_id = ANY (?)
+            ORDER BY i.page_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public PostingMatch intersect(int[] lemmaIds) {
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < lemmaIds.length; i++) {
+            positions.put(lemmaIds[i], i);
+        }
+        Collector collector = new Collector(lemmaIds.length);
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(SELECT_MATCHES);
+            Array ids = connection.createArrayOf("integer", Arrays.stream(lemmaIds).boxed().toArray());
+            ps.setArray(1, ids);
+            ps.setInt(2, lemmaIds.length);
+            ps.setArray(3, ids);
+            return ps;
+        }, rs -> {
+            collector.add(rs.getInt(1), positions.get(rs.getInt(2)), rs.getFloat(3));
+        });
+        return collector.toMatch();
+    }
+
+    @Override
+    public void add(int lemmaId, int pageId, float rank) {
+    }
+
+    @Override
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+    }
+
+    @Override
+    public void removeLemmas(Collection<Integer> lemmaIds) {
+    }
+
+    /**
+     * Собирает упорядоченные по page_id строки в столбцы {@link PostingMatch}.
+     */
+    private static final class Collector {
+
+        private int[] pageIds = new int[16];
+        private float[][] ranks;
+        private int size;
+
+        Collector(int lemmas) {
+            ranks = new float[lemmas][16];
+        }
+
+        void add(int pageId, int lemma, float rank) {
+            if (size == 0 || pageIds[size - 1] != pageId) {
+                if (size == pageIds.length) {
+                    pageIds = Arrays.copyOf(pageIds, size << 1);
+                    for (int i = 0; i < ranks.length; i++) {
+                        ranks[i] = Arrays.copyOf(ranks[i], size << 1);
+                    }
+                }
+                pageIds[size++] = pageId;
+            }
+            ranks[lemma][size - 1] = rank;
+        }
+
+        PostingMatch toMatch() {
+            float[][] trimmed = new float[ranks.length][];
+            for (int i = 0; i < ranks.length; i++) {
+                trimmed[i] = Arrays.copyOf(ranks[i], size);
+            }
+            return new PostingMatch(Arrays.copyOf(pageIds, size), trimmed);
+        }
+    }
+}
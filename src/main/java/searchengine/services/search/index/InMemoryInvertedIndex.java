@@ -0,0 +1,148 @@
+package searchengine.services.search.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс в памяти. Строится из таблиц lemma/index после старта приложения
+ * и дальше обновляется при сохранении лемм. Пока идёт загрузка, запросы
+ * обслуживает {@link DatabaseInvertedIndex}.
+ * <p>
+ * Загрузка собирает списки отдельно от рабочих, поэтому строки из базы всегда
+ * дописываются в конец. Записи обходчика за время загрузки попадают в рабочие списки,
+ * в конце загруженные списки сливаются с ними за один проход. Удалённые за это время
+ * страницы и леммы из загруженного не восстанавливаются.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "search-engine", name = "inverted-index", havingValue = "memory", matchIfMissing = true)
+public class InMemoryInvertedIndex implements InvertedIndex {
+
+    private static final String LOAD_QUERY =
+            "SELECT lemma_id, page_id, \"rank\" FROM \"index\" ORDER BY lemma_id, page_id";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final Map<Integer, PostingList> postings = new ConcurrentHashMap<>();
+    private final Set<Integer> pagesRemovedWhileLoading = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> lemmasRemovedWhileLoading = ConcurrentHashMap.newKeySet();
+    private final Object loadLock = new Object();
+
+    private final DatabaseInvertedIndex fallback;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean loading;
+    private volatile boolean ready;
+
+    public InMemoryInvertedIndex(DatabaseInvertedIndex fallback,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager) {
+        this.fallback = fallback;
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        loading = true;
+        CompletableFuture.runAsync(() -> {
+            long start = System.currentTimeMillis();
+            Map<Integer, PostingList> loaded = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(LOAD_QUERY,
+                    (RowCallbackHandler) rs -> loaded.computeIfAbsent(rs.getInt(1), id -> new PostingList())
+                            .add(rs.getInt(2), rs.getFloat(3))));
+            publish(loaded);
+            ready = true;
+            log.info("Inverted index loaded: {} lemmas in {} ms",
+                    postings.size(), System.currentTimeMillis() - start);
+        }).exceptionally(e -> {
+            synchronized (loadLock) {
+                loading = false;
+                pagesRemovedWhileLoading.clear();
+                lemmasRemovedWhileLoading.clear();
+            }
+            log.error("Failed to load inverted index, falling back to database", e);
+            return null;
+        });
+    }
+
+    private void publish(Map<Integer, PostingList> loaded) {
+        synchronized (loadLock) {
+            loaded.forEach((lemmaId, list) -> {
+                if (!lemmasRemovedWhileLoading.contains(lemmaId)) {
+                    postingList(lemmaId).mergeFrom(list, pagesRemovedWhileLoading);
+                }
+            });
+            loading = false;
+            pagesRemovedWhileLoading.clear();
+            lemmasRemovedWhileLoading.clear();
+        }
+    }
+
+    @Override
+    public PostingMatch intersect(int[] lemmaIds) {
+        if (!ready) {
+            return fallback.intersect(lemmaIds);
+        }
+        Postings[] lists = new Postings[lemmaIds.length];
+        for (int i = 0; i < lemmaIds.length; i++) {
+            PostingList list = postings.get(lemmaIds[i]);
+            lists[i] = list == null ? Postings.EMPTY : list.snapshot();
+        }
+        return PostingIntersection.intersect(lists);
+    }
+
+    @Override
+    public void add(int lemmaId, int pageId, float rank) {
+        postingList(lemmaId).add(pageId, rank);
+    }
+
+    @Override
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        if (loading) {
+            pagesRemovedWhileLoading.add(pageId);
+        }
+        for (Integer lemmaId : lemmaIds) {
+            PostingList list = postings.get(lemmaId);
+            if (list != null) {
+                list.remove(pageId);
+            }
+        }
+    }
+
+    @Override
+    public void removeLemmas(Collection<Integer> lemmaIds) {
+        if (loading) {
+            synchronized (loadLock) {
+                if (loading) {
+                    lemmasRemovedWhileLoading.addAll(lemmaIds);
+                }
+                lemmaIds.forEach(postings::remove);
+            }
+            return;
+        }
+        lemmaIds.forEach(postings::remove);
+    }
+
+    private PostingList postingList(int lemmaId) {
+        return postings.computeIfAbsent(lemmaId, id -> new PostingList());
+    }
+}
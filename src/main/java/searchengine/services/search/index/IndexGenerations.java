@@ -0,0 +1,57 @@
+package searchengine.services.search.index;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.model.Site;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики поколений индекса по сайтам. Каждая запись или удаление данных сайта
+ * увеличивает его поколение, поэтому закэшированный результат, посчитанный
+ * на более старом поколении, считается устаревшим.
+ */
+@Component
+public class IndexGenerations {
+
+    private final Map<String, AtomicLong> bySite = new ConcurrentHashMap<>();
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * Внутри транзакции поколение увеличивается только после коммита, при откате остаётся прежним.
+     * Кэш запоминает поколение до ранжирования, поэтому результат, посчитанный по данным
+     * до коммита, всё равно станет устаревшим.
+     */
+    public void advance(Site site) {
+        String url = site.getUrl();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(url);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                increment(url);
+            }
+        });
+    }
+
+    /**
+     * @param site URL сайта или пустая строка для поиска по всем сайтам
+     */
+    public long current(String site) {
+        if (site.isEmpty()) {
+            return total.get();
+        }
+        AtomicLong generation = bySite.get(site);
+        return generation == null ? 0 : generation.get();
+    }
+
+    private void increment(String url) {
+        bySite.computeIfAbsent(url, u -> new AtomicLong()).incrementAndGet();
+        total.incrementAndGet();
+    }
+}
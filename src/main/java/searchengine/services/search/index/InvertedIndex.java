@@ -0,0 +1,22 @@
+package searchengine.services.search.index;
+
+import java.util.Collection;
+
+/**
+ * Инвертированный индекс: для каждой леммы хранит отсортированный
+ * список страниц (постинг-лист) с рангами леммы на этих страницах.
+ */
+public interface InvertedIndex {
+
+    /**
+     * Возвращает страницы, содержащие все переданные леммы.
+     * Ранги в результате идут в том же порядке, что и {@code lemmaIds}.
+     */
+    PostingMatch intersect(int[] lemmaIds);
+
+    void add(int lemmaId, int pageId, float rank);
+
+    void removePage(int pageId, Collection<Integer> lemmaIds);
+
+    void removeLemmas(Collection<Integer> lemmaIds);
+}
@@ -0,0 +1,86 @@
+package searchengine.services.search.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Пересечение отсортированных постинг-листов. Обход ведётся по самому
+ * короткому списку, в остальных позиция ищется галопом (экспоненциальный
+ * шаг + бинарный поиск), поэтому длинные списки почти не просматриваются.
+ * Порядок обхода и длины списков возвращаются в {@link PostingMatch} для разбора запроса.
+ */
+public final class PostingIntersection {
+
+    private PostingIntersection() {
+    }
+
+    public static PostingMatch intersect(Postings[] lists) {
+        int n = lists.length;
+        if (n == 0) {
+            return PostingMatch.empty(0);
+        }
+        int[] sizes = Arrays.stream(lists).mapToInt(Postings::size).toArray();
+        int[] order = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingInt(i -> sizes[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        Postings shortest = lists[order[0]];
+        if (shortest.size() == 0) {
+            return new PostingMatch(new int[0], new float[n][0], order, sizes);
+        }
+
+        int[] cursors = new int[n];
+        int[] pageIds = new int[shortest.size()];
+        float[][] ranks = new float[n][shortest.size()];
+        int found = 0;
+
+        outer:
+        for (int j = 0; j < shortest.size(); j++) {
+            int pageId = shortest.pageIds()[j];
+            for (int k = 1; k < n; k++) {
+                Postings other = lists[order[k]];
+                int pos = gallop(other.pageIds(), cursors[k], pageId);
+                cursors[k] = pos;
+                if (pos == other.size()) {
+                    break outer;
+                }
+                if (other.pageIds()[pos] != pageId) {
+                    continue outer;
+                }
+            }
+            pageIds[found] = pageId;
+            ranks[order[0]][found] = shortest.ranks()[j];
+            for (int k = 1; k < n; k++) {
+                ranks[order[k]][found] = lists[order[k]].ranks()[cursors[k]];
+            }
+            found++;
+        }
+
+        for (int i = 0; i < n; i++) {
+            ranks[i] = Arrays.copyOf(ranks[i], found);
+        }
+        return new PostingMatch(Arrays.copyOf(pageIds, found), ranks, order, sizes);
+    }
+
+    /**
+     * Возвращает первую позицию начиная с {@code from}, где значение не меньше {@code target}.
+     */
+    static int gallop(int[] values, int from, int target) {
+        int size = values.length;
+        if (from >= size || values[from] >= target) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && values[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, size);
+        int pos = Arrays.binarySearch(values, low + 1, high, target);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,160 @@
+package searchengine.services.search.index;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Постинг-лист одной леммы. Id страниц хранятся по возрастанию в виде
+ * дельт, закодированных varint, ранги - в параллельном массиве float.
+ * Id новых страниц почти всегда больше уже сохранённых, поэтому добавление
+ * обычно сводится к дописыванию в конец без перекодирования.
+ * <p>
+ * Раскодированная копия для пересечения кэшируется до следующего изменения списка
+ * через мягкую ссылку, поэтому частые леммы не раскодируются на каждый запрос,
+ * а при нехватке памяти копии освобождаются.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private float[] ranks = new float[2];
+    private int size;
+    private int lastPageId;
+    private SoftReference<Postings> decoded;
+
+    synchronized void add(int pageId, float rank) {
+        decoded = null;
+        if (size == 0 || pageId > lastPageId) {
+            append(pageId, rank);
+            return;
+        }
+        int[] pageIds = decode();
+        int pos = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (pos >= 0) {
+            ranks[pos] = rank;
+            return;
+        }
+        pos = -pos - 1;
+        int[] newIds = new int[size + 1];
+        float[] newRanks = new float[size + 1];
+        System.arraycopy(pageIds, 0, newIds, 0, pos);
+        System.arraycopy(ranks, 0, newRanks, 0, pos);
+        newIds[pos] = pageId;
+        newRanks[pos] = rank;
+        System.arraycopy(pageIds, pos, newIds, pos + 1, size - pos);
+        System.arraycopy(ranks, pos, newRanks, pos + 1, size - pos);
+        encode(newIds, newRanks, size + 1);
+    }
+
+    synchronized void remove(int pageId) {
+        if (size == 0 || pageId > lastPageId) {
+            return;
+        }
+        decoded = null;
+        int[] pageIds = decode();
+        int pos = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(pageIds, pos + 1, pageIds, pos, size - pos - 1);
+        float[] newRanks = Arrays.copyOf(ranks, size);
+        System.arraycopy(newRanks, pos + 1, newRanks, pos, size - pos - 1);
+        encode(pageIds, newRanks, size - 1);
+    }
+
+    synchronized Postings snapshot() {
+        Postings cached = decoded != null ? decoded.get() : null;
+        if (cached == null) {
+            cached = new Postings(decode(), Arrays.copyOf(ranks, size));
+            decoded = new SoftReference<>(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Сливает за один проход список, загруженный из базы, с этим списком. При совпадении
+     * страниц остаётся ранг из этого списка как более новый, страницы из {@code removed}
+     * из загруженного списка пропускаются.
+     */
+    synchronized void mergeFrom(PostingList loaded, Set<Integer> removed) {
+        Postings other = loaded.snapshot();
+        int[] pageIds = decode();
+        int[] mergedIds = new int[size + other.size()];
+        float[] mergedRanks = new float[mergedIds.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < other.size()) {
+            if (j < other.size() && removed.contains(other.pageIds()[j])) {
+                j++;
+            } else if (j == other.size() || (i < size && pageIds[i] <= other.pageIds()[j])) {
+                if (j < other.size() && pageIds[i] == other.pageIds()[j]) {
+                    j++;
+                }
+                mergedIds[n] = pageIds[i];
+                mergedRanks[n++] = ranks[i++];
+            } else {
+                mergedIds[n] = other.pageIds()[j];
+                mergedRanks[n++] = other.ranks()[j++];
+            }
+        }
+        decoded = null;
+        encode(mergedIds, mergedRanks, n);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void append(int pageId, float rank) {
+        ensureCapacity(length + 5);
+        int delta = pageId - lastPageId;
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        if (size == ranks.length) {
+            ranks = Arrays.copyOf(ranks, size + (size >> 1) + 1);
+        }
+        ranks[size++] = rank;
+        lastPageId = pageId;
+    }
+
+    private void encode(int[] pageIds, float[] newRanks, int newSize) {
+        data = new byte[Math.max(8, newSize * 2)];
+        ranks = new float[Math.max(2, newSize)];
+        length = 0;
+        size = 0;
+        lastPageId = 0;
+        for (int i = 0; i < newSize; i++) {
+            append(pageIds[i], newRanks[i]);
+        }
+    }
+
+    private int[] decode() {
+        int[] pageIds = new int[size];
+        int pos = 0;
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += delta;
+            pageIds[i] = value;
+        }
+        return pageIds;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.services.search.index;
+
+/**
+ * Результат пересечения постинг-листов: {@code ranks[i][j]} - ранг i-й леммы
+ * запроса на странице {@code pageIds[j]}. Для разбора запроса пересечение в памяти
+ * записывает {@code order} - индексы лемм в порядке обхода, от самого короткого списка,
+ * и {@code postingSizes[i]} - длину постинг-листа i-й леммы. Если пересекала БД,
+ * оба массива пусты: порядок выбирает планировщик.
+ */
+public record PostingMatch(int[] pageIds, float[][] ranks, int[] order, int[] postingSizes) {
+
+    public PostingMatch(int[] pageIds, float[][] ranks) {
+        this(pageIds, ranks, new int[0], new int[0]);
+    }
+
+    public static PostingMatch empty(int lemmas) {
+        return new PostingMatch(new int[0], new float[lemmas][0]);
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.services.search.index;
+
+public record Postings(int[] pageIds, float[] ranks) {
+
+    public static final Postings EMPTY = new Postings(new int[0], new float[0]);
+
+    public int size() {
+        return pageIds.length;
+    }
+}
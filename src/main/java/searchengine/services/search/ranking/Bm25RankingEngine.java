@@ -0,0 +1,54 @@
+package searchengine.services.search.ranking;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+import searchengine.model.Lemma;
+import searchengine.services.search.index.PostingMatch;
+import searchengine.services.statistics.IndexStatistics;
+
+import java.util.List;
+
+/**
+ * Okapi BM25. Частота леммы на странице - её ранг из постинга. Число страниц, документная
+ * частота и средняя длина берутся по всей области поиска из {@link Corpus}, поэтому оценки
+ * разных сайтов попадают в общий топ в одной шкале. Длины страниц берутся из {@link IndexStatistics}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "search-engine", name = "ranking", havingValue = "bm25", matchIfMissing = true)
+public class Bm25RankingEngine implements RankingEngine {
+
+    private final IndexStatistics statistics;
+    private final SearchEngineProperties properties;
+
+    @Override
+    public void score(List<Lemma> lemmas, PostingMatch match, Corpus corpus, ScoreConsumer consumer) {
+        if (lemmas.isEmpty()) return;
+        double k1 = properties.getBm25().getK1();
+        double b = properties.getBm25().getB();
+        long pages = corpus.pages();
+        double averageLength = corpus.averageLength();
+
+        double[] idf = new double[lemmas.size()];
+        for (int i = 0; i < idf.length; i++) {
+            long df = corpus.frequency(lemmas.get(i).getLemma());
+            idf[i] = Math.log(1 + (pages - df + 0.5) / (df + 0.5));
+        }
+
+        float[][] ranks = match.ranks();
+        int[] pageIds = match.pageIds();
+        int[] lengths = statistics.pageLengths(lemmas.get(0).getSite().getId(), pageIds);
+        for (int j = 0; j < pageIds.length; j++) {
+            double lengthRatio = averageLength > 0 ? lengths[j] / averageLength : 1;
+            double norm = k1 * (1 - b + b * lengthRatio);
+            double score = 0;
+            for (int i = 0; i < idf.length; i++) {
+                float tf = ranks[i][j];
+                score += idf[i] * tf * (k1 + 1) / (tf + norm);
+            }
+            consumer.accept(pageIds[j], score);
+        }
+    }
+}
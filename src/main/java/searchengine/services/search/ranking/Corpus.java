@@ -0,0 +1,19 @@
+package searchengine.services.search.ranking;
+
+import java.util.Map;
+
+/**
+ * Статистика области поиска - одного сайта или всех сразу: число страниц, сумма их длин
+ * и документные частоты лемм запроса. Одна на весь запрос, поэтому оценки страниц
+ * разных сайтов сравнимы между собой.
+ */
+public record Corpus(long pages, long length, Map<String, Long> frequencies) {
+
+    public double averageLength() {
+        return pages > 0 ? (double) length / pages : 0;
+    }
+
+    public long frequency(String lemma) {
+        return frequencies.getOrDefault(lemma, 0L);
+    }
+}
@@ -0,0 +1,21 @@
+package searchengine.services.search.ranking;
+
+import searchengine.model.Lemma;
+import searchengine.services.search.index.PostingMatch;
+
+import java.util.List;
+
+/**
+ * Оценка релевантности страниц по постингам лемм запроса. Вызывается отдельно
+ * для каждого сайта: {@code lemmas.get(i)} соответствует {@code match.ranks()[i]},
+ * а {@code corpus} общий для всех сайтов запроса. Страницы и их индекс из базы не читаются.
+ */
+public interface RankingEngine {
+
+    void score(List<Lemma> lemmas, PostingMatch match, Corpus corpus, ScoreConsumer consumer);
+
+    @FunctionalInterface
+    interface ScoreConsumer {
+        void accept(int pageId, double score);
+    }
+}
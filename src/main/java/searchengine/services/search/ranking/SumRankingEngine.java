@@ -0,0 +1,29 @@
+package searchengine.services.search.ranking;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.model.Lemma;
+import searchengine.services.search.index.PostingMatch;
+
+import java.util.List;
+
+/**
+ * Прежняя абсолютная релевантность: сумма рангов лемм запроса на странице.
+ */
+@Component
+@ConditionalOnProperty(prefix = "search-engine", name = "ranking", havingValue = "sum")
+public class SumRankingEngine implements RankingEngine {
+
+    @Override
+    public void score(List<Lemma> lemmas, PostingMatch match, Corpus corpus, ScoreConsumer consumer) {
+        float[][] ranks = match.ranks();
+        int[] pageIds = match.pageIds();
+        for (int j = 0; j < pageIds.length; j++) {
+            double sum = 0;
+            for (float[] lemmaRanks : ranks) {
+                sum += lemmaRanks[j];
+            }
+            consumer.accept(pageIds[j], sum);
+        }
+    }
+}
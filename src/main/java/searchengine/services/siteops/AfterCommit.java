@@ -0,0 +1,28 @@
+package searchengine.services.siteops;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Изменения состояния в памяти (инвертированный индекс, статистика), которые должны
+ * совпадать с базой: внутри транзакции откладываются до её коммита и при откате
+ * не применяются, вне транзакции выполняются сразу.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
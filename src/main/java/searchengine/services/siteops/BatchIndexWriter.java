@@ -0,0 +1,321 @@
+package searchengine.services.siteops;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.dto.indexing.PageLemmas;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.services.search.index.IndexGenerations;
+import searchengine.services.search.index.InvertedIndex;
+import searchengine.services.statistics.IndexStatistics;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная запись лемм и индекса сразу для нескольких страниц.
+ * Леммы всего пакета вставляются одним многострочным upsert-ом
+ * (по чанкам), строки индекса - JDBC-батчем, всё в одной транзакции.
+ * Уже сохранённые страницы переписываются на месте по разнице лемм.
+ * Если запись идёт внутри внешней транзакции, индекс в памяти и статистика
+ * обновляются только после её коммита.
+ */
+@Slf4j
+@Service
+public class BatchIndexWriter {
+
+    private static final int LEMMA_CHUNK_SIZE = 1_000;
+    private static final int PAGE_CHUNK_SIZE = 1_000;
+    private static final int INDEX_BATCH_SIZE = 1_000;
+
+    private static final String UPSERT_LEMMAS_PREFIX =
+            "INSERT INTO lemma (site_id, lemma, frequency) VALUES ";
+    private static final String UPSERT_LEMMAS_SUFFIX =
+            " ON CONFLICT (site_id, lemma) DO UPDATE SET frequency = lemma.frequency + excluded.frequency" +
+                    " RETURNING id, lemma, xmax = 0";
+    private static final String INSERT_INDEX =
+            "INSERT INTO \"index\" (page_id, lemma_id, \"rank\") VALUES (?, ?, ?)";
+    private static final String SELECT_PAGE_LEMMAS =
+            "SELECT l.lemma, i.lemma_id, i.\"rank\" FROM \"index\" i JOIN lemma l ON l.id = i.lemma_id" +
+                    " WHERE i.page_id = ?";
+    private static final String UPDATE_RANK =
+            "UPDATE \"index\" SET \"rank\" = ? WHERE page_id = ? AND lemma_id = ?";
+    private static final String DELETE_INDEX =
+            "DELETE FROM \"index\" WHERE page_id = ? AND lemma_id = ANY (?)";
+    private static final String DECREMENT_LEMMAS =
+            "UPDATE lemma SET frequency = frequency - 1 WHERE id = ANY (?)";
+    private static final String SELECT_PAGE_LENGTH =
+            "SELECT page_length FROM page WHERE id = ?";
+    private static final String SELECT_INDEX_ROWS =
+            "SELECT page_id, lemma_id FROM \"index\" WHERE page_id = ANY (?)";
+    private static final String DECREMENT_LEMMA_PAGES =
+            "UPDATE lemma l SET frequency = l.frequency - c.pages" +
+                    " FROM (SELECT lemma_id, COUNT(*) AS pages FROM \"index\" WHERE page_id = ANY (?)" +
+                    " GROUP BY lemma_id) c WHERE c.lemma_id = l.id";
+    private static final String DELETE_PAGES_INDEX =
+            "DELETE FROM \"index\" WHERE page_id = ANY (?)";
+    private static final String DELETE_PAGES =
+            "DELETE FROM page WHERE id = ANY (?) RETURNING id, page_length";
+    private static final String UPDATE_PAGE =
+            "UPDATE page SET code = ?, title = ?, plain_text = ?, etag = ?, last_modified = ?," +
+                    " content_hash = ?, page_length = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SiteDataService siteDataService;
+    private final PageContentStore contentStore;
+    private final InvertedIndex invertedIndex;
+    private final IndexGenerations generations;
+    private final IndexStatistics statistics;
+    private final MeterRegistry meterRegistry;
+
+    public BatchIndexWriter(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            SiteDataService siteDataService,
+                            PageContentStore contentStore,
+                            InvertedIndex invertedIndex,
+                            IndexGenerations generations,
+                            IndexStatistics statistics,
+                            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.siteDataService = siteDataService;
+        this.contentStore = contentStore;
+        this.invertedIndex = invertedIndex;
+        this.generations = generations;
+        this.statistics = statistics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Сохраняет пакет обхода одной транзакцией: новые страницы (без id) вставляются вместе
+     * с HTML, леммами и строками индекса, уже сохранённые переписываются через
+     * {@link #rewritePage}, затем убираются осиротевшие леммы. При ошибке пакет не оставляет
+     * следов, прежние версии страниц остаются как были, а статистика и индекс в памяти
+     * меняются только после коммита.
+     *
+     * @param contents сжатый HTML в порядке {@code pages}
+     */
+    public void writePages(Site site, List<PageLemmas> pages, List<byte[]> contents) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<Integer> removedLemmas = new HashSet<>();
+            List<Page> created = new ArrayList<>();
+            List<PageLemmas> createdLemmas = new ArrayList<>();
+            List<byte[]> createdContents = new ArrayList<>();
+            for (int i = 0; i < pages.size(); i++) {
+                PageLemmas page = pages.get(i);
+                if (page.page().getId() != null) {
+                    removedLemmas.addAll(rewritePage(site, page, contents.get(i)));
+                } else {
+                    created.add(page.page());
+                    createdLemmas.add(page);
+                    createdContents.add(contents.get(i));
+                }
+            }
+            if (!created.isEmpty()) {
+                List<Page> saved = siteDataService.createPagesBatch(created);
+                contentStore.saveAll(saved.stream().map(Page::getId).toList(), createdContents);
+                List<PageLemmas> withIds = new ArrayList<>(saved.size());
+                for (int i = 0; i < saved.size(); i++) {
+                    withIds.add(new PageLemmas(saved.get(i), createdLemmas.get(i).lemmas()));
+                }
+                write(site, withIds);
+            }
+            siteDataService.deleteUnusedLemmas(site, removedLemmas);
+        });
+    }
+
+    /**
+     * Переписывает сохранённую страницу на месте по разнице лемм: новые леммы получают
+     * +1 к частоте и строку индекса, пропавшие - -1 и удаление строки, у общих меняется
+     * только ранг. Идентификатор страницы не меняется. Вызывается внутри транзакции.
+     *
+     * @return идентификаторы лемм, пропавших со страницы, для {@link SiteDataService#deleteUnusedLemmas}
+     */
+    private List<Integer> rewritePage(Site site, PageLemmas page, byte[] content) {
+        int pageId = page.page().getId();
+        Map<String, IndexRow> previous = new HashMap<>();
+        jdbcTemplate.query(SELECT_PAGE_LEMMAS, (RowCallbackHandler) rs ->
+                previous.put(rs.getString(1), new IndexRow(pageId, rs.getInt(2), rs.getFloat(3))), pageId);
+
+        Map<String, Integer> added = new TreeMap<>();
+        List<IndexRow> changed = new ArrayList<>();
+        page.lemmas().forEach((lemma, count) -> {
+            IndexRow old = previous.remove(lemma);
+            if (old == null) {
+                added.put(lemma, 1);
+            } else if (old.rank() != count) {
+                changed.add(new IndexRow(pageId, old.lemmaId(), count));
+            }
+        });
+        List<Integer> removed = previous.values().stream().map(IndexRow::lemmaId).sorted().toList();
+
+        AtomicInteger created = new AtomicInteger();
+        Map<String, Integer> lemmaIds = upsertLemmas(site.getId(), added, created);
+        List<IndexRow> inserted = added.keySet().stream()
+                .map(lemma -> new IndexRow(pageId, lemmaIds.get(lemma), page.lemmas().get(lemma)))
+                .toList();
+        insertIndex(inserted);
+        jdbcTemplate.batchUpdate(UPDATE_RANK, changed, INDEX_BATCH_SIZE, (ps, row) -> {
+            ps.setFloat(1, row.rank());
+            ps.setInt(2, row.pageId());
+            ps.setInt(3, row.lemmaId());
+        });
+        if (!removed.isEmpty()) {
+            jdbcTemplate.update(DECREMENT_LEMMAS, ps -> ps.setArray(1, intArray(ps, removed)));
+            jdbcTemplate.update(DELETE_INDEX, ps -> {
+                ps.setInt(1, pageId);
+                ps.setArray(2, intArray(ps, removed));
+            });
+        }
+        Page updated = page.page();
+        int previousLength = jdbcTemplate.queryForObject(SELECT_PAGE_LENGTH, Integer.class, pageId);
+        jdbcTemplate.update(UPDATE_PAGE, updated.getCode(), updated.getTitle(), updated.getText(),
+                updated.getEtag(), updated.getLastModified(), updated.getContentHash(), updated.getLength(), pageId);
+        contentStore.replace(pageId, content);
+
+        int siteId = site.getId();
+        int createdLemmas = created.get();
+        AfterCommit.run(() -> {
+            invertedIndex.removePage(pageId, removed);
+            inserted.forEach(row -> invertedIndex.add(row.lemmaId(), row.pageId(), row.rank()));
+            changed.forEach(row -> invertedIndex.add(row.lemmaId(), row.pageId(), row.rank()));
+            statistics.updatePage(siteId, pageId, previousLength, updated.getLength());
+            statistics.addLemmas(siteId, createdLemmas);
+        });
+        generations.advance(site);
+        log.debug("Rewrote page {}: {} lemmas added, {} removed, {} ranks changed",
+                updated.getPath(), inserted.size(), removed.size(), changed.size());
+        return removed;
+    }
+
+    /**
+     * Удаляет сохранённые страницы сайта вместе с HTML и строками индекса, по чанку
+     * в транзакции: частоты лемм уменьшаются на число удалённых с ними страниц,
+     * осиротевшие леммы убираются. Индекс в памяти и статистика меняются после коммита.
+     */
+    public void deletePages(Site site, List<Integer> pageIds) {
+        for (int from = 0; from < pageIds.size(); from += PAGE_CHUNK_SIZE) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + PAGE_CHUNK_SIZE, pageIds.size()));
+            transactionTemplate.executeWithoutResult(status -> deleteChunk(site, chunk));
+        }
+    }
+
+    private void deleteChunk(Site site, List<Integer> pageIds) {
+        Map<Integer, List<Integer>> pageLemmas = new HashMap<>();
+        jdbcTemplate.query(SELECT_INDEX_ROWS, ps -> ps.setArray(1, intArray(ps, pageIds)), (RowCallbackHandler) rs ->
+                pageLemmas.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(rs.getInt(2)));
+        jdbcTemplate.update(DECREMENT_LEMMA_PAGES, ps -> ps.setArray(1, intArray(ps, pageIds)));
+        jdbcTemplate.update(DELETE_PAGES_INDEX, ps -> ps.setArray(1, intArray(ps, pageIds)));
+        Map<Integer, Integer> lengths = new HashMap<>();
+        jdbcTemplate.query(DELETE_PAGES, ps -> ps.setArray(1, intArray(ps, pageIds)), (RowCallbackHandler) rs ->
+                lengths.put(rs.getInt(1), rs.getInt(2)));
+
+        int siteId = site.getId();
+        AfterCommit.run(() -> {
+            pageLemmas.forEach(invertedIndex::removePage);
+            lengths.forEach((pageId, length) -> statistics.removePage(siteId, pageId, length));
+        });
+        siteDataService.deleteUnusedLemmas(site,
+                pageLemmas.values().stream().flatMap(List::stream).collect(Collectors.toSet()));
+        generations.advance(site);
+        log.debug("Deleted {} pages of {}", lengths.size(), site.getName());
+    }
+
+    public void write(Site site, List<PageLemmas> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        // TreeMap задаёт одинаковый порядок блокировок строк lemma у параллельных писателей
+        Map<String, Integer> frequencies = new TreeMap<>();
+        for (PageLemmas page : pages) {
+            page.lemmas().forEach((lemma, count) -> frequencies.merge(lemma, 1, Integer::sum));
+        }
+
+        AtomicInteger created = new AtomicInteger();
+        List<IndexRow> rows = transactionTemplate.execute(status -> {
+            created.set(0);
+            Map<String, Integer> lemmaIds = upsertLemmas(site.getId(), frequencies, created);
+            List<IndexRow> indexRows = new ArrayList<>();
+            for (PageLemmas page : pages) {
+                int pageId = page.page().getId();
+                page.lemmas().forEach((lemma, count) ->
+                        indexRows.add(new IndexRow(pageId, lemmaIds.get(lemma), (float) count)));
+            }
+            insertIndex(indexRows);
+            return indexRows;
+        });
+        int createdLemmas = created.get();
+        AfterCommit.run(() -> {
+            rows.forEach(row -> invertedIndex.add(row.lemmaId(), row.pageId(), row.rank()));
+            statistics.addLemmas(site.getId(), createdLemmas);
+        });
+        generations.advance(site);
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("indexing.batch.write", "site", site.getName())
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("indexing.pages.written", "site", site.getName())
+                .increment(pages.size());
+        log.debug("Wrote {} pages, {} lemmas, {} index rows for {} ({} pages/s)",
+                pages.size(), frequencies.size(), rows.size(), site.getName(),
+                String.format("%.1f", pages.size() * 1e9 / elapsed));
+    }
+
+    /**
+     * @param created счётчик новых лемм: {@code xmax = 0} у строки, вставленной, а не обновлённой upsert-ом
+     */
+    private Map<String, Integer> upsertLemmas(int siteId, Map<String, Integer> frequencies, AtomicInteger created) {
+        Map<String, Integer> lemmaIds = new HashMap<>(frequencies.size() * 2);
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(frequencies.entrySet());
+
+        for (int from = 0; from < entries.size(); from += LEMMA_CHUNK_SIZE) {
+            List<Map.Entry<String, Integer>> chunk =
+                    entries.subList(from, Math.min(from + LEMMA_CHUNK_SIZE, entries.size()));
+            StringJoiner values = new StringJoiner(", ", UPSERT_LEMMAS_PREFIX, UPSERT_LEMMAS_SUFFIX);
+            Object[] args = new Object[chunk.size() * 3];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : chunk) {
+                values.add("(?, ?, ?)");
+                args[i++] = siteId;
+                args[i++] = entry.getKey();
+                args[i++] = entry.getValue();
+            }
+            jdbcTemplate.query(values.toString(),
+                    (RowCallbackHandler) rs -> {
+                        lemmaIds.put(rs.getString(2), rs.getInt(1));
+                        if (rs.getBoolean(3)) {
+                            created.incrementAndGet();
+                        }
+                    }, args);
+        }
+        return lemmaIds;
+    }
+
+    private void insertIndex(List<IndexRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_INDEX, rows, INDEX_BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row.pageId());
+            ps.setInt(2, row.lemmaId());
+            ps.setFloat(3, row.rank());
+        });
+    }
+
+    private static Array intArray(PreparedStatement ps, List<Integer> values) throws SQLException {
+        return ps.getConnection().createArrayOf("integer", values.toArray());
+    }
+
+    private record IndexRow(int pageId, int lemmaId, float rank) {
+    }
+}
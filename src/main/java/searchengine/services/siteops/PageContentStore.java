@@ -0,0 +1,105 @@
+package searchengine.services.siteops;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchEngineProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * HTML страниц хранится отдельно от page, в таблице page_content, и читается
+ * только по явному запросу. Первый байт значения - формат: 0 - UTF-8 как есть,
+ * 1 - сжатый deflate, так что обе настройки {@code compress-content} читаются одинаково.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATE = 1;
+
+    private static final String INSERT_CONTENT =
+            "INSERT INTO page_content (page_id, content) VALUES (?, ?) ON CONFLICT (page_id) DO NOTHING";
+    private static final String REPLACE_CONTENT =
+            "INSERT INTO page_content (page_id, content) VALUES (?, ?)" +
+                    " ON CONFLICT (page_id) DO UPDATE SET content = excluded.content";
+    private static final String SELECT_CONTENT =
+            "SELECT content FROM page_content WHERE page_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchEngineProperties properties;
+
+    public byte[] encode(String html) {
+        byte[] raw = html.getBytes(StandardCharsets.UTF_8);
+        if (!properties.isCompressContent()) {
+            byte[] value = new byte[raw.length + 1];
+            value[0] = PLAIN;
+            System.arraycopy(raw, 0, value, 1, raw.length);
+            return value;
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+            out.write(DEFLATE);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public String decode(byte[] value) {
+        if (value[0] == PLAIN) {
+            return new String(value, 1, value.length - 1, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, 1, value.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted page content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public void saveAll(List<Integer> pageIds, List<byte[]> contents) {
+        List<Object[]> rows = new ArrayList<>(pageIds.size());
+        for (int i = 0; i < pageIds.size(); i++) {
+            rows.add(new Object[]{pageIds.get(i), contents.get(i)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_CONTENT, rows);
+    }
+
+    public void replace(int pageId, byte[] content) {
+        jdbcTemplate.update(REPLACE_CONTENT, pageId, content);
+    }
+
+    public Optional<String> find(int pageId) {
+        return jdbcTemplate.query(SELECT_CONTENT, rs -> rs.next()
+                ? Optional.of(decode(rs.getBytes(1)))
+                : Optional.<String>empty(), pageId);
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.services.siteops;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Заполняет заголовок и текст у страниц, сохранённых до появления этих колонок.
+ * Страницы обрабатываются пачками по возрастанию id, повторный запуск
+ * подхватывает только ещё не заполненные строки.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageTextBackfill {
+
+    private static final int BATCH_SIZE = 200;
+
+    private static final String SELECT_PAGES =
+            "SELECT p.id, c.content FROM page p LEFT JOIN page_content c ON c.page_id = p.id" +
+                    " WHERE p.plain_text IS NULL AND p.id > ? ORDER BY p.id LIMIT ?";
+    private static final String UPDATE_PAGE =
+            "UPDATE page SET title = ?, plain_text = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore contentStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        CompletableFuture.runAsync(this::backfill)
+                .exceptionally(e -> {
+                    log.error("Page text backfill failed", e);
+                    return null;
+                });
+    }
+
+    public void backfill() {
+        long started = System.currentTimeMillis();
+        int lastId = 0;
+        int total = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+            jdbcTemplate.query(SELECT_PAGES, (RowCallbackHandler) rs -> {
+                byte[] stored = rs.getBytes(2);
+                String html = stored != null ? contentStore.decode(stored) : "";
+                Document doc = Jsoup.parse(html);
+                rows.add(new Object[]{doc.title(), doc.body().text(), rs.getInt(1)});
+            }, lastId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate(UPDATE_PAGE, rows);
+            lastId = (int) rows.get(rows.size() - 1)[2];
+            total += rows.size();
+        }
+        if (total > 0) {
+            log.info("Backfilled title and text for {} pages in {} ms",
+                    total, System.currentTimeMillis() - started);
+        }
+    }
+}
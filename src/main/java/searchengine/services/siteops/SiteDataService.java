@@ -1,22 +1,31 @@
 package searchengine.services.siteops;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.SiteConfig;
+import searchengine.dto.indexing.PagePath;
+import searchengine.dto.indexing.PageState;
 import searchengine.model.*;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.search.index.IndexGenerations;
+import searchengine.services.search.index.InvertedIndex;
+import searchengine.services.statistics.IndexStatistics;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +36,10 @@ public class SiteDataService {
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final InvertedIndex invertedIndex;
+    private final IndexGenerations generations;
+    private final IndexStatistics statistics;
+    private final MeterRegistry meterRegistry;
 
     @Transactional
     public Site createSite(SiteConfig siteConfig) {
@@ -39,61 +52,84 @@ public class SiteDataService {
         return siteRepository.saveAndFlush(site);
     }
 
-    public List<Page> createPagesBatch(List<Page> pages) {
-        log.info("Saved {} pages", pages.size());
-        return pageRepository.saveAllAndFlush(pages);
+    @Transactional
+    public Site recreateSite(SiteConfig siteConfig) {
+        deleteAllBySite(siteConfig);
+        return createSite(siteConfig);
     }
 
-    public Set<String> checkExistingPages(List<String> pages) {
-        return new HashSet<>(pageRepository.findPathsByPathIn(pages));
+    /**
+     * Возвращает сайт вместе с уже собранными данными для продолжения остановленного обхода.
+     */
+    @Transactional
+    public Site findOrCreateSite(SiteConfig siteConfig) {
+        return siteRepository.findByUrl(siteConfig.getUrl())
+                .orElseGet(() -> createSite(siteConfig));
     }
 
-    @Transactional
-    public void deleteAllBySite(SiteConfig siteConfig) {
-        Site exists = siteRepository.findByUrl(siteConfig.getUrl()).orElse(null);
-        if (exists != null) {
-            List<Page> pages = pageRepository.findAllBySiteId(exists.getId());
-            for (Page page : pages) {
-                indexRepository.deleteAllByPage(page);
-            }
-            lemmaRepository.deleteAllBySiteId(exists.getId());
-            pageRepository.deleteAllBySiteId(exists.getId());
-            siteRepository.delete(exists);
+    @Transactional(readOnly = true)
+    public Optional<PageState> findPageState(Site site, String path) {
+        return pageRepository.findStateByPathAndSite(path, site);
+    }
+
+    public List<Page> createPagesBatch(List<Page> pages) {
+        List<Page> saved = meterRegistry.timer("indexing.pages.save")
+                .record(() -> pageRepository.saveAllAndFlush(pages));
+        AfterCommit.run(() ->
+                saved.forEach(page -> statistics.addPage(page.getSite().getId(), page.getId(), page.getLength())));
+        log.debug("Saved {} pages", pages.size());
+        return saved;
+    }
+
+    /**
+     * Однократно проходит по путям уже сохранённых страниц сайта,
+     * не загружая их в память целиком.
+     */
+    @Transactional(readOnly = true)
+    public void forEachPagePath(Site site, Consumer<String> action) {
+        try (Stream<String> paths = pageRepository.streamPathsBySiteId(site.getId())) {
+            paths.forEach(action);
         }
-        log.debug("Data for SiteConfig deleted");
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void saveLemma(Site site, Page page, String lemma, Integer count) {
-        log.debug("Method saveLemma of SiteDataService with lemma {}", lemma);
-        Lemma exist = lemmaRepository.findByLemmaAndSite(lemma, site).orElse(null);
-
-        if (exist != null) {
-            log.debug("Found lemma not null {}", exist.getLemma());
-            lemmaRepository.incrementFrequencyById(exist.getId());
-            checkForSave(exist, page, count);
-        } else {
-            exist = Lemma.builder()
-                    .lemma(lemma).site(site).frequency(1).build();
-            lemmaRepository.saveAndFlush(exist);
-            log.debug("Saved lemma {}", exist.getLemma());
-
-            checkForSave(exist, page, count);
+    /**
+     * Идентификаторы сохранённых страниц сайта, пути которых не прошли {@code reached}.
+     */
+    @Transactional(readOnly = true)
+    public List<Integer> findPageIdsNotReached(Site site, Predicate<String> reached) {
+        try (Stream<PagePath> pages = pageRepository.streamPagePathsBySiteId(site.getId())) {
+            return pages.filter(page -> !reached.test(page.path()))
+                    .map(PagePath::id)
+                    .toList();
         }
-        log.debug("End of method saveLemma of SiteDataService with lemma {}", lemma);
     }
 
+    /**
+     * Удаляет все данные сайта несколькими множественными DELETE,
+     * не загружая страницы и строки индекса в память.
+     */
     @Transactional
-    public void checkForSave(Lemma lemma, Page page, Integer count) {
-        Optional<Index> exists = indexRepository.findByLemmaIdAndPageId(lemma.getId(), page.getId());
-        if (exists.isEmpty()) {
-            Index index = Index.builder()
-                    .lemma(lemma)
-                    .page(page)
-                    .rank(count.floatValue())
-                    .build();
-            indexRepository.saveAndFlush(index);
+    public void deleteAllBySite(SiteConfig siteConfig) {
+        Site exists = siteRepository.findByUrl(siteConfig.getUrl()).orElse(null);
+        if (exists != null) {
+            Integer siteId = exists.getId();
+            List<Integer> lemmaIds = lemmaRepository.findIdsBySiteId(siteId);
+
+            long start = System.currentTimeMillis();
+            int index = timed("index", () -> indexRepository.deleteAllBySiteId(siteId));
+            int lemmas = timed("lemma", () -> lemmaRepository.deleteAllBySiteId(siteId));
+            int contents = timed("page_content", () -> pageRepository.deleteContentBySiteId(siteId));
+            int pages = timed("page", () -> pageRepository.deleteAllBySiteId(siteId));
+            siteRepository.delete(exists);
+            AfterCommit.run(() -> {
+                invertedIndex.removeLemmas(lemmaIds);
+                statistics.removeSite(siteId);
+            });
+            generations.advance(exists);
+            log.info("Purged site {}: {} index rows, {} lemmas, {} pages ({} with content) in {} ms",
+                    exists.getName(), index, lemmas, pages, contents, System.currentTimeMillis() - start);
         }
+        log.debug("Data for SiteConfig deleted");
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -124,24 +160,29 @@ public class SiteDataService {
         siteRepository.saveAndFlush(site);
     }
 
-    @Transactional(readOnly = true)
-    public boolean pageExists(String path) {
-        return pageRepository.findByPath(path).isPresent();
-    }
-
+    /**
+     * Удаляет из переданных лемм сайта те, что больше не встречаются ни на одной странице.
+     */
     @Transactional
-    public void deleteDataByPage(String path, Site site) {
-        Optional<Page> page = pageRepository.findByPathAndSite(path, site);
-        if (page.isPresent()) {
-            List<Index> index = indexRepository.findAllByPageId(page.get().getId());
-            index.forEach(i -> {
-                lemmaRepository.decrementFrequencyById(i.getLemma().getId());
+    public void deleteUnusedLemmas(Site site, Collection<Integer> lemmaIds) {
+        if (lemmaIds.isEmpty()) {
+            return;
+        }
+        List<Integer> unused = lemmaRepository.findUnusedIds(site.getId(), lemmaIds);
+        if (!unused.isEmpty()) {
+            int deleted = lemmaRepository.deleteUnused(site.getId(), unused);
+            AfterCommit.run(() -> {
+                invertedIndex.removeLemmas(unused);
+                statistics.addLemmas(site.getId(), -deleted);
             });
-
-            indexRepository.deleteAllByPage(page.get());
-            pageRepository.deleteById(page.get().getId());
-            lemmaRepository.deleteAllByFrequencyZero();
+            generations.advance(site);
         }
-        log.info("Data for Page {} deleted", path);
+    }
+
+    private int timed(String table, IntSupplier delete) {
+        long start = System.currentTimeMillis();
+        int deleted = delete.getAsInt();
+        log.debug("Deleted {} rows from {} in {} ms", deleted, table, System.currentTimeMillis() - start);
+        return deleted;
     }
 }
@@ -0,0 +1,268 @@
+package searchengine.services.statistics;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Число страниц, лемм и сумма длин страниц по сайтам в памяти. Считаются при старте
+ * двумя запросами с GROUP BY site_id, дальше поддерживаются путём записи индекса:
+ * пакетной записью, переписыванием и удалением страницы и очисткой сайта. Частота леммы по сайту
+ * хранится в самой строке lemma, общая частота - их сумма по сайтам.
+ * <p>
+ * Длины отдельных страниц нужны только BM25 и читаются из базы по сайту при первом
+ * ранжировании по нему; дальше хранятся в {@link PageLengths} (около 12-24 байт на страницу)
+ * и обновляются вместе со счётчиками.
+ */
+@Slf4j
+@Component
+public class IndexStatistics {
+
+    private static final String COUNT_PAGES =
+            "SELECT site_id, COUNT(*), COALESCE(SUM(page_length), 0) FROM page GROUP BY site_id";
+    private static final String COUNT_LEMMAS = "SELECT site_id, COUNT(*) FROM lemma GROUP BY site_id";
+    private static final String LOAD_PAGE_LENGTHS = "SELECT id, page_length FROM page WHERE site_id = ?";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final Map<Integer, SiteCounters> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, PageLengths> pageLengths = new ConcurrentHashMap<>();
+    private final AtomicLong totalPages = new AtomicLong();
+    private final AtomicLong totalLemmas = new AtomicLong();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private record SiteCounters(AtomicLong pages, AtomicLong lemmas, AtomicLong length) {
+        SiteCounters() {
+            this(new AtomicLong(), new AtomicLong(), new AtomicLong());
+        }
+    }
+
+    public IndexStatistics(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query(COUNT_PAGES, (RowCallbackHandler) rs -> {
+                SiteCounters counters = counters(rs.getInt(1));
+                counters.pages().addAndGet(rs.getLong(2));
+                counters.length().addAndGet(rs.getLong(3));
+                totalPages.addAndGet(rs.getLong(2));
+                totalLength.addAndGet(rs.getLong(3));
+            });
+            jdbcTemplate.query(COUNT_LEMMAS, (RowCallbackHandler) rs -> addLemmas(rs.getInt(1), rs.getLong(2)));
+        });
+        log.info("Index statistics loaded: {} pages, {} lemmas in {} ms",
+                totalPages.get(), totalLemmas.get(), System.currentTimeMillis() - start);
+    }
+
+    public synchronized void addPage(int siteId, int pageId, int length) {
+        SiteCounters counters = counters(siteId);
+        counters.pages().incrementAndGet();
+        counters.length().addAndGet(length);
+        totalPages.incrementAndGet();
+        totalLength.addAndGet(length);
+        PageLengths lengths = pageLengths.get(siteId);
+        if (lengths != null) {
+            lengths.put(pageId, length);
+        }
+    }
+
+    /**
+     * Страница переписана на месте с новой длиной.
+     */
+    public synchronized void updatePage(int siteId, int pageId, int previousLength, int length) {
+        counters(siteId).length().addAndGet(length - previousLength);
+        totalLength.addAndGet(length - previousLength);
+        PageLengths lengths = pageLengths.get(siteId);
+        if (lengths != null) {
+            lengths.put(pageId, length);
+        }
+    }
+
+    /**
+     * Страница удалена: в таблице длин остаётся с длиной 0, ключи из неё не удаляются.
+     */
+    public synchronized void removePage(int siteId, int pageId, int length) {
+        SiteCounters counters = counters(siteId);
+        counters.pages().decrementAndGet();
+        counters.length().addAndGet(-length);
+        totalPages.decrementAndGet();
+        totalLength.addAndGet(-length);
+        PageLengths lengths = pageLengths.get(siteId);
+        if (lengths != null) {
+            lengths.put(pageId, 0);
+        }
+    }
+
+    public void addLemmas(int siteId, long count) {
+        counters(siteId).lemmas().addAndGet(count);
+        totalLemmas.addAndGet(count);
+    }
+
+    public synchronized void removeSite(int siteId) {
+        pageLengths.remove(siteId);
+        SiteCounters removed = sites.remove(siteId);
+        if (removed != null) {
+            totalPages.addAndGet(-removed.pages().get());
+            totalLemmas.addAndGet(-removed.lemmas().get());
+            totalLength.addAndGet(-removed.length().get());
+        }
+    }
+
+    public long pages(int siteId) {
+        SiteCounters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.pages().get();
+    }
+
+    public long lemmas(int siteId) {
+        SiteCounters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.lemmas().get();
+    }
+
+    /**
+     * Сумма длин страниц сайта в леммах.
+     */
+    public long length(int siteId) {
+        SiteCounters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.length().get();
+    }
+
+    /**
+     * Длины страниц сайта в порядке {@code pageIds}; при первом обращении к сайту читает их из базы.
+     */
+    public int[] pageLengths(int siteId, int[] pageIds) {
+        return pageLengths(siteId).get(pageIds);
+    }
+
+    public long totalPages() {
+        return totalPages.get();
+    }
+
+    public long totalLemmas() {
+        return totalLemmas.get();
+    }
+
+    public long totalLength() {
+        return totalLength.get();
+    }
+
+    /**
+     * Читает длины всех страниц сайта одним запросом. Строки сайта находит индекс
+     * (site_id, path), но page_length в него не входит, поэтому каждая строка читается из таблицы.
+     */
+    protected void loadPageLengths(int siteId, PageLengths lengths) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(LOAD_PAGE_LENGTHS,
+                (RowCallbackHandler) rs -> lengths.put(rs.getInt(1), rs.getInt(2)), siteId));
+    }
+
+    /**
+     * Таблица регистрируется до чтения базы и заблокирована на всё чтение: запись,
+     * закоммиченная после начала чтения, дождётся его и допишет свою длину сама.
+     */
+    private PageLengths pageLengths(int siteId) {
+        PageLengths lengths = pageLengths.get(siteId);
+        if (lengths != null) {
+            return lengths;
+        }
+        PageLengths created = new PageLengths();
+        synchronized (created) {
+            lengths = pageLengths.putIfAbsent(siteId, created);
+            if (lengths != null) {
+                return lengths;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                loadPageLengths(siteId, created);
+            } catch (RuntimeException e) {
+                pageLengths.remove(siteId, created);
+                throw e;
+            }
+            log.info("Loaded {} page lengths for site {} in {} ms",
+                    created.size(), siteId, System.currentTimeMillis() - start);
+        }
+        return created;
+    }
+
+    private SiteCounters counters(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteCounters());
+    }
+
+    /**
+     * Длины страниц одного сайта: открытая адресация с линейным пробированием
+     * по id страницы поверх двух {@code int[]}. Id страниц положительны, 0 - пустая ячейка.
+     */
+    public static final class PageLengths {
+
+        private int[] keys = new int[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        public synchronized void put(int pageId, int length) {
+            int slot = slot(keys, pageId);
+            if (keys[slot] == 0) {
+                keys[slot] = pageId;
+                if (++size * 3 > keys.length * 2) {
+                    grow();
+                    slot = slot(keys, pageId);
+                }
+            }
+            values[slot] = length;
+        }
+
+        /**
+         * @return длины в порядке {@code pageIds}, 0 для неизвестной страницы
+         */
+        public synchronized int[] get(int[] pageIds) {
+            int[] result = new int[pageIds.length];
+            for (int i = 0; i < pageIds.length; i++) {
+                int slot = slot(keys, pageIds[i]);
+                result[i] = keys[slot] == 0 ? 0 : values[slot];
+            }
+            return result;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length << 1];
+            values = new int[oldKeys.length << 1];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] table, int pageId) {
+            int mask = table.length - 1;
+            int h = pageId * 0x9E3779B9;
+            int i = (h ^ (h >>> 16)) & mask;
+            while (table[i] != 0 && table[i] != pageId) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
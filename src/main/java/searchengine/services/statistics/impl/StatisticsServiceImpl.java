@@ -8,15 +8,16 @@ import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.*;
 import searchengine.model.Site;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.statistics.IndexStatistics;
 import searchengine.services.statistics.StatisticsService;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,28 +25,29 @@ import java.util.List;
 public class StatisticsServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
-    private final PageRepository pageRepository;
+    private final IndexStatistics indexStatistics;
 
     private final SitesList sites;
 
     @Override
     @Transactional(readOnly = true)
     public StatisticsResponse getStatistics() {
-        log.info("Call of method getStatistics");
+        log.debug("Call of method getStatistics");
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
         total.setIndexing(true);
 
+        Map<String, Site> byUrl = siteRepository.findAll().stream()
+                .collect(Collectors.toMap(Site::getUrl, site -> site, (a, b) -> a));
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         List<SiteConfig> sitesList = sites.getSites();
         for (SiteConfig siteConfig : sitesList) {
-            DetailedStatisticsItem item = statistics(siteConfig);
+            DetailedStatisticsItem item = statistics(siteConfig, byUrl.get(siteConfig.getUrl()));
             detailed.add(item);
         }
 
-        total.setPages((int) pageRepository.count());
-        total.setLemmas((int) lemmaRepository.count());
+        total.setPages((int) indexStatistics.totalPages());
+        total.setLemmas((int) indexStatistics.totalLemmas());
 
         StatisticsResponse response = new StatisticsResponse();
         StatisticsData data = new StatisticsData();
@@ -58,20 +60,19 @@ public class StatisticsServiceImpl implements StatisticsService {
         return response;
     }
 
-    public DetailedStatisticsItem statistics(SiteConfig siteConfig) {
-        Site exists = siteRepository.findByUrl(siteConfig.getUrl()).orElse(null);
+    public DetailedStatisticsItem statistics(SiteConfig siteConfig, Site exists) {
         DetailedStatisticsItem item = new DetailedStatisticsItem();
 
         if (exists != null) {
-            Long pages = pageRepository.countPageBySiteId(exists.getId());
-            Long lemmas = lemmaRepository.countLemmaBySiteId(exists.getId());
+            long pages = indexStatistics.pages(exists.getId());
+            long lemmas = indexStatistics.lemmas(exists.getId());
             long timestampMillis = exists.getStatusTime()
                     .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
 
             item.setName(exists.getName());
             item.setUrl(exists.getUrl());
-            item.setPages(pages.intValue());
-            item.setLemmas(lemmas.intValue());
+            item.setPages((int) pages);
+            item.setLemmas((int) lemmas);
             item.setStatus(exists.getStatus().name());
             item.setError(exists.getLastError());
             item.setStatusTime(timestampMillis);
@@ -0,0 +1,47 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Фильтр Блума не должен терять добавленные адреса, а доля ложных срабатываний
+ * при заполнении до {@code expectedUrls} должна оставаться около заданной.
+ */
+class BloomSeenSetTest {
+
+    private static final int EXPECTED = 20_000;
+    private static final double RATE = 0.01;
+
+    @Test
+    void hasNoFalseNegatives() {
+        BloomSeenSet seen = new BloomSeenSet(EXPECTED, RATE);
+        int added = 0;
+        for (int i = 0; i < EXPECTED; i++) {
+            if (seen.add("/page/" + i)) added++;
+        }
+        for (int i = 0; i < EXPECTED; i++) {
+            assertThat(seen.contains("/page/" + i)).as("/page/%d", i).isTrue();
+            assertThat(seen.add("/page/" + i)).as("/page/%d", i).isFalse();
+        }
+        assertThat(seen.size()).isEqualTo(added);
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearTarget() {
+        BloomSeenSet seen = new BloomSeenSet(EXPECTED, RATE);
+        int falsePositives = 0;
+        for (int i = 0; i < EXPECTED; i++) {
+            if (!seen.add("/page/" + i)) falsePositives++;
+        }
+        int probes = 2_000;
+        int probeFalsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (!seen.add("/other/" + i)) probeFalsePositives++;
+        }
+
+        // пока фильтр заполняется, ложных срабатываний меньше целевой доли
+        assertThat((double) falsePositives / EXPECTED).isLessThan(RATE);
+        assertThat((double) probeFalsePositives / probes).isLessThan(RATE * 2);
+    }
+}
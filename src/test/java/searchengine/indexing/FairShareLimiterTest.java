@@ -0,0 +1,138 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Под конкурентной нагрузкой лимитер не превышает общую ёмкость и лимиты сайтов,
+ * делит ёмкость поровну между нуждающимися сайтами и не хранит ничего после снятия сайта.
+ */
+class FairShareLimiterTest {
+
+    private static final int CAPACITY = 5;
+
+    @Test
+    void respectsCapacityAndSiteLimitsUnderContention() throws Exception {
+        FairShareLimiter limiter = new FairShareLimiter(CAPACITY);
+        Map<Integer, Integer> limits = Map.of(1, 0, 2, 1, 3, 0);
+        limits.forEach(limiter::register);
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        Map<Integer, AtomicInteger> siteInUse = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> siteMax = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(24)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int siteId : limits.keySet()) {
+                siteInUse.put(siteId, new AtomicInteger());
+                siteMax.put(siteId, new AtomicInteger());
+                for (int t = 0; t < 8; t++) {
+                    workers.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 300; i++) {
+                            limiter.acquire(siteId);
+                            try {
+                                maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                                siteMax.get(siteId).accumulateAndGet(siteInUse.get(siteId).incrementAndGet(), Math::max);
+                                Thread.onSpinWait();
+                                siteInUse.get(siteId).decrementAndGet();
+                                inUse.decrementAndGet();
+                            } finally {
+                                limiter.release(siteId);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        }
+
+        assertThat(maxInUse.get()).isLessThanOrEqualTo(CAPACITY);
+        assertThat(siteMax.get(2).get()).isEqualTo(1);
+        assertThat(limiter.used()).isZero();
+    }
+
+    @Test
+    void sharesCapacityBetweenSitesInNeed() throws Exception {
+        FairShareLimiter limiter = new FairShareLimiter(4);
+        limiter.register(1, 0);
+        limiter.register(2, 0);
+        // пока второму сайту ресурс не нужен, первый занимает всю ёмкость
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(1);
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> second = executor.submit(() -> acquire(limiter, 2));
+            assertBlocked(second);
+            limiter.release(1);
+            second.get(5, TimeUnit.SECONDS);
+
+            // теперь доля каждого - 2: первый сайт со своими двумя ждёт и при свободной ёмкости
+            limiter.release(1);
+            Future<?> first = executor.submit(() -> acquire(limiter, 1));
+            assertBlocked(first);
+            limiter.acquire(2);
+            assertThat(limiter.used()).isEqualTo(4);
+
+            limiter.release(1);
+            first.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(limiter.used()).isEqualTo(4);
+    }
+
+    @Test
+    void failsFastAfterUnregisterWithoutLeaking() throws Exception {
+        FairShareLimiter limiter = new FairShareLimiter(1);
+        limiter.register(1, 0);
+        limiter.acquire(1);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> acquire(limiter, 1));
+            assertBlocked(waiting);
+            limiter.unregister(1);
+            assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThatThrownBy(() -> limiter.acquire(1)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> limiter.acquire(7)).isInstanceOf(IllegalStateException.class);
+        limiter.release(1);
+        assertThat(limiter.used()).isZero();
+
+        // снятый сайт не занимает долю: новый сайт получает всю ёмкость
+        limiter.register(2, 0);
+        limiter.acquire(2);
+        assertThat(limiter.used()).isEqualTo(1);
+    }
+
+    private static Void acquire(FairShareLimiter limiter, int siteId) throws InterruptedException {
+        limiter.acquire(siteId);
+        return null;
+    }
+
+    private static void assertBlocked(Future<?> future) throws Exception {
+        assertThatThrownBy(() -> future.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+    }
+}
@@ -0,0 +1,29 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Точное множество сверяется с {@link HashSet} на путях с повторами, в том числе после расширений таблицы.
+ */
+class FingerprintSeenSetTest {
+
+    @Test
+    void matchesHashSet() {
+        Random random = new Random(5);
+        FingerprintSeenSet seen = new FingerprintSeenSet();
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            String path = "/catalog/" + random.nextInt(20_000) + "?page=" + random.nextInt(3);
+            String probe = "/catalog/" + random.nextInt(20_000) + "?page=" + random.nextInt(3);
+            assertThat(seen.contains(probe)).as(probe).isEqualTo(expected.contains(probe));
+            assertThat(seen.add(path)).as(path).isEqualTo(expected.add(path));
+        }
+        assertThat(seen.size()).isEqualTo(expected.size());
+    }
+}
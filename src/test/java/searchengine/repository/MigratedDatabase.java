@@ -0,0 +1,67 @@
+package searchengine.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Отдельная схема PostgreSQL, созданная миграциями Liquibase, на одном соединении.
+ * По умолчанию поднимается встроенный PostgreSQL; с {@code -Dtest-db.jdbc-url=...}
+ * (и при необходимости {@code test-db.user}, {@code test-db.password}) используется уже
+ * запущенный сервер. Схема пересоздаётся при открытии и удаляется при закрытии.
+ */
+final class MigratedDatabase implements AutoCloseable {
+
+    private final String schema;
+    private final EmbeddedPostgres postgres;
+    private final SingleConnectionDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    private MigratedDatabase(String schema, EmbeddedPostgres postgres, String url) {
+        this.schema = schema;
+        this.postgres = postgres;
+        this.dataSource = new SingleConnectionDataSource(url, System.getProperty("test-db.user", "postgres"),
+                System.getProperty("test-db.password", ""), true);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    static MigratedDatabase open(String schema) throws Exception {
+        String url = System.getProperty("test-db.jdbc-url");
+        EmbeddedPostgres postgres = null;
+        if (url == null) {
+            postgres = EmbeddedPostgres.start();
+            url = postgres.getJdbcUrl("postgres", "postgres");
+        }
+        MigratedDatabase database = new MigratedDatabase(schema, postgres, url);
+        database.migrate();
+        return database;
+    }
+
+    JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    private void migrate() throws Exception {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + schema);
+        jdbcTemplate.execute("SET search_path TO " + schema);
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setDefaultSchema(schema);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.xml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @Override
+    public void close() throws Exception {
+        jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE");
+        dataSource.destroy();
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы горячих запросов удаления и поиска по странице и по сайту не должны
+ * содержать Seq Scan, а каждое чтение индекса должно идти по условию на его
+ * ведущую колонку, а не полным проходом. Схема создаётся миграциями Liquibase и заполняется синтетическими
+ * данными; последовательное сканирование и соединения hash/merge запрещены,
+ * так что планировщик выберет их только при отсутствии подходящего индекса.
+ * База - {@link MigratedDatabase}.
+ */
+class QueryPlanTest {
+
+    /**
+     * 10 сайтов, 20 000 страниц, 5 000 лемм и по 20 лемм своего сайта на страницу,
+     * чтобы статистика таблиц была похожа на рабочую.
+     */
+    private static final String SEED = """
+            INSERT INTO site (id, status, status_time, url, name)
+            SELECT s, 'INDEXED', now(), 'https://site' || s || '.test', 'site' || s FROM generate_series(1, 10) s;
+            INSERT INTO page (id, site_id, path, code, page_length)
+            SELECT p, 1 + p % 10, '/' || p, 200, 20 FROM generate_series(1, 20000) p;
+            INSERT INTO page_content (page_id, content)
+            SELECT id, '\\x00'::BYTEA FROM page;
+            INSERT INTO lemma (id, site_id, lemma, frequency)
+            SELECT l, 1 + l % 10, 'l' || l, 40 FROM generate_series(1, 5000) l;
+            INSERT INTO "index" (page_id, lemma_id, "rank")
+            SELECT p, p % 10 + 10 * (1 + (p + k * 37) % 499), 1
+            FROM generate_series(1, 20000) p, generate_series(0, 19) k;
+            """;
+
+    private static final String LEADING_COLUMN = """
+            SELECT a.attname FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indexrelid
+            JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+            WHERE c.relname = ? AND c.relnamespace = current_schema()::regnamespace""";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static MigratedDatabase database;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        database = MigratedDatabase.open("query_plan");
+        jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute(SEED);
+        jdbcTemplate.execute("ANALYZE");
+        jdbcTemplate.execute("SET enable_seqscan = off");
+        jdbcTemplate.execute("SET enable_hashjoin = off");
+        jdbcTemplate.execute("SET enable_mergejoin = off");
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        database.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // страница
+            "SELECT id FROM page WHERE path = '/' AND site_id = 1",
+            "SELECT content FROM page_content WHERE page_id = 1",
+            "SELECT l.lemma, i.lemma_id, i.\"rank\" FROM \"index\" i JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = 1",
+            "UPDATE \"index\" SET \"rank\" = 2 WHERE page_id = 1 AND lemma_id = 10",
+            "DELETE FROM \"index\" WHERE page_id = 1 AND lemma_id = ANY ('{10,20}')",
+            "UPDATE lemma SET frequency = frequency - 1 WHERE id = ANY ('{10,20}')",
+            "SELECT page_length FROM page WHERE id = 1",
+            "UPDATE page SET code = 200, page_length = 5 WHERE id = 1",
+            // сайт
+            "SELECT path FROM page WHERE site_id = 1",
+            "SELECT id, page_length FROM page WHERE site_id = 1",
+            "SELECT id FROM lemma WHERE site_id = 1",
+            "DELETE FROM \"index\" i USING page p WHERE i.page_id = p.id AND p.site_id = 1",
+            "DELETE FROM page_content c USING page p WHERE c.page_id = p.id AND p.site_id = 1",
+            "DELETE FROM lemma WHERE site_id = 1 AND id IN (1, 2, 3) AND frequency <= 0",
+            "DELETE FROM lemma WHERE site_id = 1",
+            "DELETE FROM page WHERE site_id = 1",
+            // поиск
+            "SELECT id FROM lemma WHERE lemma = 'l1'",
+            "SELECT id FROM lemma WHERE lemma = 'l1' AND site_id = 1",
+            """
+            SELECT i.page_id, i.lemma_id, i."rank" FROM "index" i
+            JOIN (SELECT page_id FROM "index" WHERE lemma_id = ANY ('{1,2}')
+                  GROUP BY page_id HAVING COUNT(*) = 2) m ON m.page_id = i.page_id
+            WHERE i.lemma_id = ANY ('{1,2}')
+            ORDER BY i.page_id"""
+    })
+    void usesIndexes(String query) throws Exception {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + query, String.class);
+        List<JsonNode> scans = new ArrayList<>();
+        collectScans(MAPPER.readTree(json).get(0).get("Plan"), scans);
+
+        assertThat(scans).as(json)
+                .isNotEmpty()
+                .noneMatch(node -> node.path("Node Type").asText().equals("Seq Scan"))
+                .allMatch(node -> !node.has("Index Name") || constrainsLeadingColumn(node));
+    }
+
+    /**
+     * Условие по неведущей колонке btree тоже попадает в Index Cond, но читает весь индекс.
+     */
+    private static boolean constrainsLeadingColumn(JsonNode node) {
+        String column = jdbcTemplate.queryForObject(LEADING_COLUMN, String.class, node.get("Index Name").asText());
+        return Pattern.compile("(^|[^\\w.])" + column + "\\b")
+                .matcher(node.path("Index Cond").asText())
+                .find();
+    }
+
+    private static void collectScans(JsonNode node, List<JsonNode> scans) {
+        if (node.has("Relation Name") || node.has("Index Name")) {
+            scans.add(node);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectScans(child, scans);
+        }
+    }
+}
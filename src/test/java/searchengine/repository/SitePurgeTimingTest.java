@@ -0,0 +1,94 @@
+package searchengine.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер очистки сайта теми же множественными DELETE, что выполняет
+ * {@code SiteDataService.deleteAllBySite}, на 10 тыс., 100 тыс. и 1 млн строк индекса.
+ * Рядом лежит второй сайт того же размера, поэтому удаление должно выбирать строки
+ * своего сайта по индексам. Время каждого запроса печатается в консоль.
+ * Долгий, запускается явно: {@code mvn test -Dtest=SitePurgeTimingTest -Dpurge-timing=true}.
+ */
+@EnabledIfSystemProperty(named = "purge-timing", matches = "true")
+class SitePurgeTimingTest {
+
+    /** Страниц на сайт - по 20 строк индекса на страницу */
+    private static final int LEMMAS_PER_PAGE = 20;
+
+    private static final String SEED = """
+            INSERT INTO site (id, status, status_time, url, name)
+            SELECT s, 'INDEXED', now(), 'https://site' || s || '.test', 'site' || s FROM generate_series(1, 2) s;
+            INSERT INTO page (id, site_id, path, code, page_length)
+            SELECT p, 1 + p %% 2, '/' || p, 200, 20 FROM generate_series(1, %1$d) p;
+            INSERT INTO page_content (page_id, content)
+            SELECT id, '\\x00'::BYTEA FROM page;
+            INSERT INTO lemma (id, site_id, lemma, frequency)
+            SELECT l, 1 + l %% 2, 'l' || l, 1 FROM generate_series(1, %2$d) l;
+            INSERT INTO "index" (page_id, lemma_id, "rank")
+            SELECT p, p %% 2 + 2 * (1 + (p + k * 37) %% (%3$d - 1)), 1
+            FROM generate_series(1, %1$d) p, generate_series(0, 19) k;
+            ANALYZE;
+            """;
+
+    /** Запросы {@link IndexRepository}, {@link LemmaRepository}, {@link PageRepository} и удаление сайта */
+    private static final Map<String, String> PURGE = new LinkedHashMap<>();
+
+    static {
+        PURGE.put("index", "DELETE FROM \"index\" i USING page p WHERE i.page_id = p.id AND p.site_id = 1");
+        PURGE.put("lemma", "DELETE FROM lemma WHERE site_id = 1");
+        PURGE.put("page_content", "DELETE FROM page_content c USING page p WHERE c.page_id = p.id AND p.site_id = 1");
+        PURGE.put("page", "DELETE FROM page WHERE site_id = 1");
+        PURGE.put("site", "DELETE FROM site WHERE id = 1");
+    }
+
+    private static MigratedDatabase database;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        database = MigratedDatabase.open("site_purge");
+        jdbcTemplate = database.jdbcTemplate();
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        database.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void purgesSite(int indexRows) {
+        int pages = 2 * indexRows / LEMMAS_PER_PAGE;
+        int lemmas = 2 * Math.max(1_000, indexRows / 100);
+        jdbcTemplate.execute("TRUNCATE \"index\", page_content, page, lemma, site");
+        jdbcTemplate.execute(SEED.formatted(pages, lemmas, lemmas / 2));
+
+        StringBuilder report = new StringBuilder();
+        jdbcTemplate.execute("BEGIN");
+        long total = System.nanoTime();
+        PURGE.forEach((table, sql) -> {
+            long start = System.nanoTime();
+            int rows = jdbcTemplate.update(sql);
+            report.append(" %s=%d rows/%d ms".formatted(table, rows, (System.nanoTime() - start) / 1_000_000));
+            if (table.equals("index")) {
+                assertThat(rows).isEqualTo(indexRows);
+            }
+        });
+        jdbcTemplate.execute("COMMIT");
+        System.out.printf("Purge of %,d index rows: %d ms,%s%n",
+                indexRows, (System.nanoTime() - total) / 1_000_000, report);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"index\"", Integer.class)).isEqualTo(indexRows);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page WHERE site_id = 1", Integer.class)).isZero();
+    }
+}
@@ -0,0 +1,139 @@
+package searchengine.services.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchEngineProperties;
+import searchengine.model.Site;
+import searchengine.services.search.index.IndexGenerations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Кэш сверяется с ранжированием без кэша: после любой последовательности запросов
+ * и изменений индекса первые {@code needed} страниц ответа совпадают с пересчитанными заново.
+ */
+class QueryCacheTest {
+
+    private static final List<String> SITES = List.of("https://a.test", "https://b.test");
+
+    private final SearchEngineProperties properties = new SearchEngineProperties();
+    private final IndexGenerations generations = new IndexGenerations();
+    /** Версия данных сайта: меняется при каждой записи, как и поколение */
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    @Test
+    void matchesUncachedRanking() {
+        QueryCache cache = new QueryCache(properties, generations, new SimpleMeterRegistry());
+        Random random = new Random(3);
+        List<List<String>> queries = List.of(List.of("дом"), List.of("дом", "окно"), List.of("окно", "дом"));
+        List<String> sites = new ArrayList<>(SITES);
+        sites.add("");
+
+        for (int i = 0; i < 5_000; i++) {
+            if (random.nextInt(10) == 0) {
+                write(SITES.get(random.nextInt(SITES.size())));
+                continue;
+            }
+            List<String> lemmas = queries.get(random.nextInt(queries.size()));
+            String site = sites.get(random.nextInt(sites.size()));
+            int needed = 1 + random.nextInt(600);
+
+            RankedPages cached = cache.get(lemmas, site, needed, limit -> rank(lemmas, site, limit));
+            RankedPages expected = rank(lemmas, site, needed);
+
+            int prefix = (int) Math.min(needed, expected.total());
+            assertThat(cached.total()).isEqualTo(expected.total());
+            assertThat(Arrays.copyOf(cached.pageIds(), prefix)).containsExactly(expected.pageIds());
+        }
+    }
+
+    @Test
+    void ranksWithMarginAndReusesCoveringEntry() {
+        QueryCache cache = new QueryCache(properties, generations, new SimpleMeterRegistry());
+        List<Integer> limits = new ArrayList<>();
+
+        for (int needed : new int[]{10, 150, 300, 250}) {
+            cache.get(List.of("дом"), SITES.get(0), needed, limit -> {
+                limits.add(limit);
+                return firstPages(limit, 1_000);
+            });
+        }
+
+        assertThat(limits).containsExactly(200, 300);
+    }
+
+    @Test
+    void reusesCompleteEntryForAnyDepth() {
+        QueryCache cache = new QueryCache(properties, generations, new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int needed : new int[]{10, 500, 10_000}) {
+            cache.get(List.of("окно"), SITES.get(1), needed, limit -> {
+                calls.incrementAndGet();
+                return new RankedPages(new int[]{7, 3}, new double[]{2, 1}, 2);
+            });
+        }
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void writeToSiteInvalidatesItsEntriesAndAllSitesEntries() {
+        QueryCache cache = new QueryCache(properties, generations, new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        List<String> lemmas = List.of("дом");
+        List<String> sites = List.of(SITES.get(0), SITES.get(1), "");
+        sites.forEach(site -> cache.get(lemmas, site, 10, limit -> counted(calls, lemmas, site, limit)));
+
+        write(SITES.get(0));
+        sites.forEach(site -> cache.get(lemmas, site, 10, limit -> counted(calls, lemmas, site, limit)));
+
+        // вторая серия пересчитывает только сайт с записью и поиск по всем сайтам
+        assertThat(calls).hasValue(5);
+    }
+
+    private static RankedPages firstPages(int limit, int total) {
+        TopK top = new TopK(limit);
+        for (int i = 0; i < total; i++) {
+            top.offer(i, total - i);
+        }
+        return top.toRankedPages();
+    }
+
+    private RankedPages counted(AtomicInteger calls, List<String> lemmas, String site, int limit) {
+        calls.incrementAndGet();
+        return rank(lemmas, site, limit);
+    }
+
+    private void write(String url) {
+        Site site = new Site();
+        site.setUrl(url);
+        generations.advance(site);
+        versions.merge(url, 1, Integer::sum);
+    }
+
+    /**
+     * Детерминированное ранжирование: набор страниц зависит от лемм, сайта и версий его данных.
+     */
+    private RankedPages rank(List<String> lemmas, String site, int limit) {
+        List<String> scope = site.isEmpty() ? SITES : List.of(site);
+        TopK top = new TopK(limit);
+        for (String url : scope) {
+            int version = versions.getOrDefault(url, 0);
+            Random pages = new Random(31L * url.hashCode() + version * 17L + lemmas.stream().sorted().toList().hashCode());
+            int count = 100 + pages.nextInt(400);
+            for (int i = 0; i < count; i++) {
+                top.offer(SITES.indexOf(url) * 10_000 + i, pages.nextInt(1_000));
+            }
+        }
+        return top.toRankedPages();
+    }
+}
@@ -0,0 +1,70 @@
+package searchengine.services.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchEngineProperties;
+import searchengine.exception.EntityNotFoundException;
+import searchengine.exception.IndexingException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Листание курсором проходит замороженный список ровно один раз, а в хранилище
+ * попадают только списки, для которых выдан токен.
+ */
+class SearchCursorsTest {
+
+    private final SearchCursors cursors = new SearchCursors(new SearchEngineProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void pagesThroughFrozenListOnce() {
+        SearchCursors.FrozenResults results = cursors.freeze(List.of("дом"), ranked(100));
+        List<Integer> seen = new ArrayList<>();
+
+        String token = cursors.token(results, 0);
+        while (token != null) {
+            SearchCursors.Position position = cursors.resolve(token);
+            assertThat(position.results()).isSameAs(results);
+            int end = Math.min(results.ranked().size(), position.offset() + 7);
+            for (int i = position.offset(); i < end; i++) {
+                seen.add(results.ranked().pageIds()[i]);
+            }
+            token = cursors.token(results, end);
+        }
+
+        assertThat(seen).containsExactlyElementsOf(IntStream.range(0, 100).boxed().toList());
+    }
+
+    @Test
+    void storesOnlyListsWithToken() {
+        SearchCursors.FrozenResults frozen = cursors.freeze(List.of("дом"), ranked(10));
+        SearchCursors.FrozenResults exhausted = cursors.freeze(List.of("дом"), ranked(10));
+
+        assertThat(cursors.token(exhausted, 10)).isNull();
+        assertThatThrownBy(() -> cursors.resolve(frozen.id() + ".0")).isInstanceOf(EntityNotFoundException.class);
+        assertThatThrownBy(() -> cursors.resolve(exhausted.id() + ".0")).isInstanceOf(EntityNotFoundException.class);
+        assertThat(frozen.id()).isNotEqualTo(exhausted.id());
+    }
+
+    @Test
+    void rejectsMalformedToken() {
+        cursors.token(cursors.freeze(List.of("дом"), ranked(10)), 0);
+
+        for (String token : List.of("", "abc", ".5", "abc.", "abc.!")) {
+            assertThatThrownBy(() -> cursors.resolve(token)).isInstanceOf(IndexingException.class);
+        }
+    }
+
+    private static RankedPages ranked(int size) {
+        TopK top = new TopK(size);
+        for (int i = 0; i < size; i++) {
+            top.offer(i, size - i);
+        }
+        return top.toRankedPages();
+    }
+}
@@ -0,0 +1,59 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Куча сверяется с полной сортировкой: по убыванию релевантности, при равной - по возрастанию id.
+ */
+class TopKTest {
+
+    private record Scored(int pageId, double score) {
+    }
+
+    @Test
+    void keepsSameTopAsFullSort() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            int capacity = random.nextInt(50);
+            int offers = random.nextInt(2_000);
+            TopK top = new TopK(capacity);
+            List<Scored> all = new ArrayList<>();
+            for (int i = 0; i < offers; i++) {
+                // мало различных значений, чтобы часто встречались равные оценки
+                Scored scored = new Scored(random.nextInt(100_000), random.nextInt(20));
+                top.offer(scored.pageId(), scored.score());
+                all.add(scored);
+            }
+
+            List<Scored> expected = all.stream()
+                    .sorted(Comparator.comparingDouble(Scored::score).reversed()
+                            .thenComparingInt(Scored::pageId))
+                    .limit(capacity)
+                    .toList();
+            RankedPages ranked = top.toRankedPages();
+
+            assertThat(ranked.total()).isEqualTo(offers);
+            assertThat(ranked.pageIds()).containsExactly(expected.stream().mapToInt(Scored::pageId).toArray());
+            assertThat(ranked.scores()).containsExactly(expected.stream().mapToDouble(Scored::score).toArray());
+        }
+    }
+
+    @Test
+    void zeroCapacityOnlyCounts() {
+        TopK top = new TopK(0);
+        top.offer(1, 5);
+        top.offer(2, 7);
+
+        RankedPages ranked = top.toRankedPages();
+
+        assertThat(ranked.size()).isZero();
+        assertThat(ranked.total()).isEqualTo(2);
+    }
+}
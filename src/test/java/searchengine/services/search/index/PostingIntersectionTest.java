@@ -0,0 +1,99 @@
+package searchengine.services.search.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пересечение галопом сверяется с пересечением множеств, поиск позиции - с линейным проходом.
+ * Порядок обхода идёт от самого короткого списка, длины списков записываются как есть.
+ */
+class PostingIntersectionTest {
+
+    @Test
+    void matchesSetIntersection() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            int lists = 1 + random.nextInt(4);
+            Postings[] postings = new Postings[lists];
+            for (int i = 0; i < lists; i++) {
+                postings[i] = randomPostings(random, 1 + random.nextInt(2_000), 0.05 + random.nextDouble() * 0.6);
+            }
+
+            PostingMatch match = PostingIntersection.intersect(postings);
+
+            TreeSet<Integer> expected = toSet(postings[0]);
+            for (int i = 1; i < lists; i++) {
+                expected.retainAll(toSet(postings[i]));
+            }
+            assertThat(match.pageIds()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+            assertThat(match.postingSizes()).containsExactly(Arrays.stream(postings).mapToInt(Postings::size).toArray());
+            assertThat(match.order()).containsExactlyInAnyOrder(IntStream.range(0, lists).toArray());
+            for (int k = 1; k < lists; k++) {
+                assertThat(match.postingSizes()[match.order()[k]])
+                        .isGreaterThanOrEqualTo(match.postingSizes()[match.order()[k - 1]]);
+            }
+            for (int i = 0; i < lists; i++) {
+                for (int j = 0; j < match.size(); j++) {
+                    int pos = Arrays.binarySearch(postings[i].pageIds(), match.pageIds()[j]);
+                    assertThat(match.ranks()[i][j]).isEqualTo(postings[i].ranks()[pos]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyListGivesEmptyMatch() {
+        Postings some = new Postings(new int[]{1, 2, 3}, new float[]{1, 1, 1});
+        Postings none = new Postings(new int[0], new float[0]);
+
+        PostingMatch match = PostingIntersection.intersect(new Postings[]{some, none});
+
+        assertThat(match.size()).isZero();
+        assertThat(match.ranks()).hasNumberOfRows(2);
+        assertThat(match.order()).containsExactly(1, 0);
+        assertThat(match.postingSizes()).containsExactly(3, 0);
+    }
+
+    @Test
+    void gallopFindsFirstNotLessThanTarget() {
+        Random random = new Random(5);
+        int[] values = randomPostings(random, 5_000, 0.3).pageIds();
+        for (int round = 0; round < 5_000; round++) {
+            int from = random.nextInt(values.length + 1);
+            int target = random.nextInt(5_100);
+            int expected = from;
+            while (expected < values.length && values[expected] < target) {
+                expected++;
+            }
+            assertThat(PostingIntersection.gallop(values, from, target)).isEqualTo(expected);
+        }
+    }
+
+    private static Postings randomPostings(Random random, int range, double density) {
+        List<Integer> ids = new ArrayList<>();
+        for (int pageId = 1; pageId <= range; pageId++) {
+            if (random.nextDouble() < density) {
+                ids.add(pageId);
+            }
+        }
+        float[] ranks = new float[ids.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = 1 + random.nextInt(10);
+        }
+        return new Postings(ids.stream().mapToInt(Integer::intValue).toArray(), ranks);
+    }
+
+    private static TreeSet<Integer> toSet(Postings postings) {
+        TreeSet<Integer> set = new TreeSet<>();
+        Arrays.stream(postings.pageIds()).forEach(set::add);
+        return set;
+    }
+}
@@ -0,0 +1,103 @@
+package searchengine.services.search.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Постинг-лист сверяется с {@link TreeMap} на случайных добавлениях и удалениях.
+ */
+class PostingListTest {
+
+    @Test
+    void matchesReferenceOnRandomAddsAndRemoves() {
+        Random random = new Random(1);
+        PostingList list = new PostingList();
+        TreeMap<Integer, Float> reference = new TreeMap<>();
+        for (int op = 0; op < 20_000; op++) {
+            int pageId = 1 + random.nextInt(op < 10_000 ? 5_000 : 300_000);
+            if (random.nextInt(4) == 0) {
+                list.remove(pageId);
+                reference.remove(pageId);
+            } else {
+                float rank = random.nextInt(50) + 1;
+                list.add(pageId, rank);
+                reference.put(pageId, rank);
+            }
+            if (op % 1_000 == 0) {
+                assertMatches(list.snapshot(), reference);
+            }
+        }
+        assertMatches(list.snapshot(), reference);
+        assertThat(list.size()).isEqualTo(reference.size());
+    }
+
+    @Test
+    void snapshotIsCachedUntilListChanges() {
+        PostingList list = new PostingList();
+        list.add(10, 1);
+        list.add(20, 2);
+        Postings first = list.snapshot();
+
+        assertThat(list.snapshot()).isSameAs(first);
+
+        list.add(15, 3);
+        Postings second = list.snapshot();
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.pageIds()).containsExactly(10, 15, 20);
+        assertThat(first.pageIds()).containsExactly(10, 20);
+
+        list.remove(10);
+        assertThat(list.snapshot().pageIds()).containsExactly(15, 20);
+    }
+
+    @Test
+    void mergeKeepsLiveRanksAndSkipsRemovedPages() {
+        Random random = new Random(7);
+        PostingList loaded = new PostingList();
+        PostingList live = new PostingList();
+        TreeMap<Integer, Float> reference = new TreeMap<>();
+        Set<Integer> removed = Set.of(3, 17, 400, 999);
+
+        for (int pageId = 1; pageId < 1_000; pageId += 1 + random.nextInt(3)) {
+            loaded.add(pageId, 1);
+            if (!removed.contains(pageId)) {
+                reference.put(pageId, 1f);
+            }
+        }
+        for (int pageId = 500; pageId < 1_500; pageId += 1 + random.nextInt(5)) {
+            live.add(pageId, 2);
+            reference.put(pageId, 2f);
+        }
+
+        live.mergeFrom(loaded, removed);
+
+        assertMatches(live.snapshot(), reference);
+    }
+
+    @Test
+    void largeGapsSurviveVarintEncoding() {
+        PostingList list = new PostingList();
+        int[] pageIds = {1, 128, 16_384, 2_097_152, Integer.MAX_VALUE - 1};
+        for (int pageId : pageIds) {
+            list.add(pageId, pageId % 7);
+        }
+        assertThat(list.snapshot().pageIds()).containsExactly(pageIds);
+    }
+
+    private static void assertMatches(Postings postings, Map<Integer, Float> reference) {
+        assertThat(postings.pageIds()).containsExactly(
+                reference.keySet().stream().mapToInt(Integer::intValue).toArray());
+        float[] ranks = new float[reference.size()];
+        int i = 0;
+        for (float rank : reference.values()) {
+            ranks[i++] = rank;
+        }
+        assertThat(postings.ranks()).containsExactly(ranks);
+    }
+}